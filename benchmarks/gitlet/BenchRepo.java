@@ -0,0 +1,78 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import static gitlet.Utils.*;
+
+/** Builds the repositories the benchmarks run against.
+ *
+ *  Gitlet always works on the directory the JVM runs in, so the benchmarks
+ *  must be started from a scratch directory ("make bench" uses
+ *  target/jmh-work).  To avoid wiping a real working tree by accident,
+ *  create() only touches a directory that is empty or was set up by an
+ *  earlier run, which it marks with a .gitlet-bench file.
+ */
+class BenchRepo {
+    /** Marks a directory the benchmarks may overwrite. */
+    private static final File MARKER = join(Repository.CWD, ".gitlet-bench");
+
+    /** Discards everything printed to it. */
+    static final PrintStream NULL = new PrintStream(OutputStream.nullOutputStream());
+
+    /** Replace the current directory with a repository holding FILES files
+     *  of FILESIZE bytes and DEPTH further commits, each changing one file,
+     *  spread over master and BRANCHES branches b0, b1, ... forked along the
+     *  way.  SEED makes the repository reproducible. */
+    static void create(int files, int fileSize, int depth, int branches, long seed) {
+        clean();
+        Generator g = new Generator();
+        g.files = files;
+        g.commits = depth;
+        g.shape = "branches";
+        g.branches = branches;
+        g.sizes = "fixed:" + fileSize;
+        g.seed = seed;
+        g.generate();
+    }
+
+    /** The name of file number I. */
+    static String fileName(int i) {
+        return Generator.fileName(i);
+    }
+
+    /** SIZE bytes of random lines of text. */
+    static String contents(Random random, int size) {
+        return Generator.contents(random, size);
+    }
+
+    /** Remove everything in the current directory, after checking that it
+     *  is ours to remove. */
+    private static void clean() {
+        String[] names = Repository.CWD.list();
+        if (names == null) {
+            throw error("Cannot list %s", Repository.CWD);
+        }
+        if (names.length > 0 && !MARKER.exists()) {
+            throw error("Run the benchmarks from an empty directory, not %s",
+                        Repository.CWD);
+        }
+        for (String name : names) {
+            delete(join(Repository.CWD, name));
+        }
+        writeContents(MARKER, "");
+        Cache.invalidate();
+    }
+
+    /** Delete FILE and, if it is a directory, everything under it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,126 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static gitlet.Utils.*;
+
+/** Benchmarks of the repository commands, run against a repository built by
+ *  BenchRepo in the current directory.  The shape of the repository is set
+ *  with -p files=N -p fileSize=BYTES -p depth=COMMITS -p branches=N.
+ *  Everything runs in one warm JVM, so objects come from Cache after their
+ *  first use, as they do under the daemon or batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RepositoryBench {
+    /** Number of files in the repository. */
+    @Param({"100", "1000"})
+    public int files;
+
+    /** Size of each file in bytes. */
+    @Param({"1024"})
+    public int fileSize;
+
+    /** Number of commits on master. */
+    @Param({"100"})
+    public int depth;
+
+    /** Number of branches forked from master. */
+    @Param({"4"})
+    public int branches;
+
+    /** Where commands print while they are measured. */
+    private PrintStream stdout;
+
+    /** The branch checkoutBranch() switches to next. */
+    private String other;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stdout = System.out;
+        System.setOut(BenchRepo.NULL);
+        BenchRepo.create(files, fileSize, depth, branches, 42);
+        other = "b0";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    /** A file rewritten before each call, ready to be added. */
+    @State(Scope.Thread)
+    public static class Edit {
+        /** The file to add. */
+        String name;
+        /** Source of new contents. */
+        private final Random random = new Random(7);
+
+        @Setup(Level.Invocation)
+        public void modify(RepositoryBench repo) {
+            name = BenchRepo.fileName(random.nextInt(repo.files));
+            writeContents(join(Repository.CWD, name),
+                          BenchRepo.contents(random, repo.fileSize));
+        }
+    }
+
+    /** A change staged before each call, ready to be committed. */
+    @State(Scope.Thread)
+    public static class Staged {
+        /** Source of new contents. */
+        private final Random random = new Random(11);
+
+        @Setup(Level.Invocation)
+        public void stage(RepositoryBench repo) {
+            String name = BenchRepo.fileName(random.nextInt(repo.files));
+            writeContents(join(Repository.CWD, name),
+                          BenchRepo.contents(random, repo.fileSize));
+            Repository.staging(name);
+        }
+    }
+
+    @Benchmark
+    public void staging(Edit edit) {
+        Repository.staging(edit.name);
+    }
+
+    @Benchmark
+    public void makeCommit(Staged staged) {
+        Repository.makeCommit("bench", "");
+    }
+
+    @Benchmark
+    public void checkoutBranch() {
+        String current = Heads.currentBranch();
+        Repository.checkoutBranch(other);
+        other = current;
+    }
+
+    @Benchmark
+    public String splitPoint() {
+        return Repository.splitPoint("b0");
+    }
+
+    @Benchmark
+    public void makeLog() {
+        Repository.makeLog();
+    }
+}
@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the hashing and serialization utilities.  SIZE is the
+ *  length of the hashed data; ENTRIES the number of name-to-blob entries
+ *  in the serialized map, which is what dominates a commit.  The legacy
+ *  benchmarks hash the way Utils.sha1 and Commit did before hashing was
+ *  streamed (a new MessageDigest, getBytes and Formatter per hash, and the
+ *  commit's map and parents turned into Strings first), for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UtilsBench {
+    /** Number of bytes hashed. */
+    @Param({"64", "4096", "1048576"})
+    public int size;
+
+    /** Number of entries in the serialized map. */
+    @Param({"1000"})
+    public int entries;
+
+    private byte[] bytes;
+    private String text;
+    private TreeMap<String, String> blobs;
+    private File serialized;
+    private Commit commit;
+    private String message;
+    private Date date;
+    private List<String> parents;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        bytes = new byte[size];
+        random.nextBytes(bytes);
+        text = BenchRepo.contents(random, size);
+        blobs = new TreeMap<>();
+        for (int i = 0; i < entries; i += 1) {
+            blobs.put(BenchRepo.fileName(i), Utils.sha1(BenchRepo.fileName(i)));
+        }
+        message = "Commit with " + entries + " files";
+        date = new Date(1700000000000L);
+        parents = new ArrayList<>();
+        parents.add(Utils.sha1("parent"));
+        commit = new Commit(message, date, parents, blobs);
+        serialized = File.createTempFile("gitlet-bench", ".ser");
+        Utils.writeObject(serialized, blobs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialized.delete();
+    }
+
+    @Benchmark
+    public String sha1Bytes() {
+        return Utils.sha1(bytes);
+    }
+
+    @Benchmark
+    public String sha1String() {
+        return Utils.sha1(text);
+    }
+
+    @Benchmark
+    public String sha1BytesLegacy() {
+        return legacySha1(bytes);
+    }
+
+    @Benchmark
+    public String sha1StringLegacy() {
+        return legacySha1(text);
+    }
+
+    @Benchmark
+    public String commitID() {
+        return commit.computeID();
+    }
+
+    @Benchmark
+    public String commitIDLegacy() {
+        return legacySha1(message, date.toString(), blobs.toString(), parents.toString());
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return Utils.serialize(blobs);
+    }
+
+    @Benchmark
+    public Map<?, ?> readObject() {
+        return Utils.readObject(serialized, TreeMap.class);
+    }
+
+    /** the SHA-1 of VALS as Utils.sha1 computed it before Sha1. */
+    private static String legacySha1(Object... vals) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            for (Object val : vals) {
+                if (val instanceof byte[]) {
+                    md.update((byte[]) val);
+                } else {
+                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            Formatter result = new Formatter();
+            for (byte b : md.digest()) {
+                result.format("%02x", b);
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static gitlet.Utils.*;
+
+/** Runs many gitlet commands in one process.  "java gitlet.Main batch"
+ *  reads one command per line from the standard input, e.g.
+ *
+ *      add f.txt
+ *      commit "Add f"
+ *      checkpoint
+ *      branch other
+ *
+ *  and executes each of them as Main would, printing the same output.
+ *  Arguments are separated by blanks and may be quoted with double quotes;
+ *  blank lines and lines starting with # are ignored.  The staging area and
+ *  refs are kept in memory (see Cache) and written out once at the end, or
+ *  whenever a "checkpoint" line is read.
+ */
+public class Batch {
+
+    /** Execute the commands read from IN. */
+    public static void run(InputStream in) {
+        Cache.deferWrites();
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    execute(split(line));
+                } catch (GitletException e) {
+                    message(e.getMessage());
+                    Cache.invalidate();
+                    Heads.forget();
+                }
+            }
+        } catch (IOException excp) {
+            throw error("Cannot read commands: %s", excp.getMessage());
+        } finally {
+            Cache.flush();
+            Locks.releaseAll();
+        }
+    }
+
+    /** Execute the command line ARGS. */
+    private static void execute(String[] args) {
+        if (args.length == 0 || args[0].startsWith("#")) {
+            return;
+        }
+        switch (args[0]) {
+            case "checkpoint":
+                Cache.flush();
+                Locks.releaseAll();
+                break;
+            case "batch":
+            case "daemon":
+                throw error("Cannot run %s inside a batch.", args[0]);
+            default:
+                Stats.begin(args);
+                try {
+                    Main.run(args);
+                } finally {
+                    Stats.end();
+                }
+        }
+    }
+
+    /** Split LINE into arguments. */
+    static String[] split(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder arg = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else if (c == '\\' && i + 1 < line.length()) {
+                    i += 1;
+                    arg.append(line.charAt(i));
+                } else {
+                    arg.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (arg != null) {
+                    args.add(arg.toString());
+                    arg = null;
+                }
+            } else {
+                if (arg == null) {
+                    arg = new StringBuilder();
+                }
+                if (c == '"') {
+                    quoted = true;
+                } else {
+                    arg.append(c);
+                }
+            }
+        }
+        if (quoted) {
+            throw error("Unterminated quote: %s", line);
+        }
+        if (arg != null) {
+            args.add(arg.toString());
+        }
+        return args.toArray(new String[0]);
+    }
+}
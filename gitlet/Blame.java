@@ -0,0 +1,173 @@
+package gitlet;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static gitlet.Utils.*;
+
+/** The blame command: for each line of a file, the commit that wrote it.
+ *
+ *  The history is walked from the current commit along the versions of
+ *  the file.  Commits whose changed-path filter rules the file out, or
+ *  whose parent has the same blob, are passed over without diffing.  At
+ *  each real change the parent's version is diffed with the child's: the
+ *  lines the child added are blamed on the child and the rest are traced
+ *  on into the parent.  The walk ends once no line is left to trace.
+ *
+ *  Results are cached in .gitlet/blame, keyed by the commit that
+ *  introduced a version of the file and its blob, since nothing later in
+ *  the history can change them.  A walk that reaches a cached version
+ *  takes the answers for its remaining lines from the cache, so blaming a
+ *  file again after a few commits only diffs those commits.
+ */
+public class Blame {
+    /** Folder of the cached results. */
+    static final File BLAME_DIR = join(".gitlet", "blame");
+
+    /** For blame [file name]. */
+    public static void blame(String fileName) {
+        Commit head = Heads.getCurrent();
+        String blobID = head.getToBlobs().get(fileName);
+        if (blobID == null) {
+            throw error("File does not exist in that commit.");
+        }
+        List<String> lines = Diff.lines(Blob.getBlob(blobID).getContents());
+        String[] owners = owners(head.getID(), fileName);
+
+        Map<String, String> labels = new HashMap<>();
+        SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
+        int width = Integer.toString(lines.size()).length();
+        for (int i = 0; i < lines.size(); i += 1) {
+            String label = labels.computeIfAbsent(owners[i], id ->
+                id.substring(0, 7) + " (" + formatter.format(Commit.getCommit(id).getDate()));
+            String line = lines.get(i);
+            System.out.printf("%s %" + width + "d) %s%s", label, i + 1, line,
+                              line.endsWith("\n") ? "" : "\n");
+        }
+    }
+
+    /** get the commit that wrote each line of FILENAME as of the commit
+     *  START, which has the file. */
+    private static String[] owners(String start, String fileName) {
+        Map<String, ChangedPaths.Entry> filters = ChangedPaths.load();
+        long t = Stats.start();
+        String id = start;
+        Commit c = Commit.getCommit(id);
+        String blobID = c.getToBlobs().get(fileName);
+        List<String> lines = Diff.lines(Blob.getBlob(blobID).getContents());
+        String[] owners = new String[lines.size()];
+        // TRACE[k] is the line of the current version that line k of START
+        // came from, or -1 once line k is blamed.
+        int[] trace = new int[lines.size()];
+        for (int k = 0; k < trace.length; k += 1) {
+            trace[k] = k;
+        }
+        int left = trace.length;
+        String key = null;
+
+        while (left > 0) {
+            // skip to the commit that introduced the current version.
+            String parentID = sameParent(id, fileName, blobID, filters);
+            while (parentID != null) {
+                id = parentID;
+                parentID = sameParent(id, fileName, blobID, filters);
+            }
+            c = Commit.getCommit(id);
+            if (key == null) {
+                key = sha1(id, blobID);
+            }
+            String[] cached = cached(sha1(id, blobID));
+            if (cached != null) {
+                for (int k = 0; k < trace.length; k += 1) {
+                    if (trace[k] >= 0) {
+                        owners[k] = cached[trace[k]];
+                    }
+                }
+                left = 0;
+                break;
+            }
+
+            String parentBlob = null;
+            if (!Clone.parents(c).isEmpty()) {
+                parentID = c.getParent().get(0);
+                parentBlob = Commit.getCommit(parentID).getToBlobs().get(fileName);
+            }
+            if (parentBlob == null) {
+                for (int k = 0; k < trace.length; k += 1) {
+                    if (trace[k] >= 0) {
+                        owners[k] = id;
+                    }
+                }
+                left = 0;
+                break;
+            }
+
+            // map the lines of this version to the parent's, blaming the new ones here.
+            List<String> parentLines = Diff.lines(Blob.getBlob(parentBlob).getContents());
+            int[] toParent = new int[lines.size()];
+            int i = 0;
+            int j = 0;
+            for (Diff.Edit e : Diff.diff(parentLines, lines)) {
+                while (j < e.bStart) {
+                    toParent[j++] = i++;
+                }
+                while (j < e.bEnd) {
+                    toParent[j++] = -1;
+                }
+                i = e.aEnd;
+            }
+            while (j < lines.size()) {
+                toParent[j++] = i++;
+            }
+            for (int k = 0; k < trace.length; k += 1) {
+                if (trace[k] >= 0) {
+                    trace[k] = toParent[trace[k]];
+                    if (trace[k] < 0) {
+                        owners[k] = id;
+                        left -= 1;
+                    }
+                }
+            }
+            id = parentID;
+            blobID = parentBlob;
+            lines = parentLines;
+        }
+        Stats.phase("walk", t);
+        if (key != null && cached(key) == null) {
+            File f = join(BLAME_DIR, key);
+            BLAME_DIR.mkdir();
+            Cache.write(f, String.join("\n", owners));
+        }
+        return owners;
+    }
+
+    /** get the parent of the commit ID that has the same version BLOBID
+     *  of FILENAME, or null if there is none.  A commit whose filter rules
+     *  the file out is not decoded: its parents come from the filter. */
+    private static String sameParent(String id, String fileName, String blobID,
+                                     Map<String, ChangedPaths.Entry> filters) {
+        ChangedPaths.Entry e = filters.get(id);
+        if (e != null && !e.mightContain(fileName)) {
+            return e.parents.isEmpty() || Clone.isShallow(id) ? null : e.parents.get(0);
+        }
+        List<String> parents = Clone.parents(Commit.getCommit(id));
+        for (String parent : parents) {
+            if (blobID.equals(Commit.getCommit(parent).getToBlobs().get(fileName))) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
+    /** get the cached owners of the lines under KEY, or null. */
+    private static String[] cached(String key) {
+        File f = join(BLAME_DIR, key);
+        if (!f.isFile()) {
+            return null;
+        }
+        String contents = readContentsAsString(f);
+        return contents.isEmpty() ? new String[0] : contents.split("\n");
+    }
+}
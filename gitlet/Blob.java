@@ -1,10 +1,22 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import static gitlet.Utils.*;
 
+/** A version of a file.
+ *
+ *  A blob is saved as a serialized object under objects/blobs.  The
+ *  contents of a large blob are kept out of the object and saved raw under
+ *  objects/data instead, so that checkout can copy them to the working
+ *  directory with copyContents rather than decode and re-encode them.
+ */
 public class Blob implements Serializable {
+    /** Fixed so that adding methods does not break existing repositories. */
+    private static final long serialVersionUID = 5207869810989086113L;
+
     /** The name of the file. */
     private final String name;
 
@@ -17,6 +29,13 @@ public class Blob implements Serializable {
     /** Folder stores blobs. */
     public static final File BLOB_DIR = join(Commit.OBJECTS_DIR, "blobs");
 
+    /** Folder stores the raw contents of large blobs. */
+    public static final File DATA_DIR = join(Commit.OBJECTS_DIR, "data");
+
+    /** Least size in bytes, encoded in UTF-8, of the contents kept raw in
+     *  DATA_DIR. */
+    static final int LARGE = 64 * 1024;
+
     /** Initiate a blob to be added. */
     public Blob(String name, String contents) {
         this.name = name;
@@ -36,9 +55,18 @@ public class Blob implements Serializable {
 
     /** get contents of the Blob. */
     public String getContents() {
+        if (contents == null) {
+            return readContentsAsString(dataFile(ID));
+        }
         return contents;
     }
 
+    /** get the file holding the raw contents of the blob BLOBID, which
+     *  exists only for large blobs. */
+    private static File dataFile(String blobID) {
+        return join(DATA_DIR, blobID.substring(0, 2), blobID);
+    }
+
     /**
      * Saves a blob in the specified directory for future use.
      */
@@ -47,7 +75,61 @@ public class Blob implements Serializable {
         if (!blobFolder.exists()) {
             blobFolder.mkdir();
         }
-        writeObject(join(blobFolder, ID), this);
+        if (isLarge(contents)) {
+            File dataFolder = join(DATA_DIR, ID.substring(0, 2));
+            dataFolder.mkdirs();
+            Cache.write(join(dataFolder, ID), contents);
+        }
+        Cache.write(join(blobFolder, ID), this);
+    }
+
+    /** leave the contents of large blobs out of the object. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", name);
+        fields.put("contents", contents != null && isLarge(contents) ? null : contents);
+        fields.put("ID", ID);
+        out.writeFields();
+    }
+
+    /** check if CONTENTS take at least LARGE bytes in UTF-8, as written
+     *  to disk, without encoding them. */
+    private static boolean isLarge(String contents) {
+        int n = contents.length();
+        if (n >= LARGE) {
+            return true;
+        } else if (3L * n < LARGE) {
+            return false;
+        }
+        long size = 0;
+        for (int i = 0; i < n && size < LARGE; i += 1) {
+            char c = contents.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n
+                       && Character.isLowSurrogate(contents.charAt(i + 1))) {
+                size += 4;
+                i += 1;
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is written as '?'.
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+        return size >= LARGE;
+    }
+
+    /** write the contents of the blob BLOBID to FILE. */
+    public static void checkout(String blobID, File file) {
+        File data = dataFile(blobID);
+        if (data.isFile()) {
+            copyContents(data, file);
+        } else {
+            writeContents(file, getBlob(blobID).getContents());
+        }
     }
 
     /**
@@ -55,6 +137,14 @@ public class Blob implements Serializable {
      */
     public static Blob getBlob(String blobID) {
         File inFile = join(BLOB_DIR, blobID.substring(0, 2));
-        return readObject(join(inFile, blobID), Blob.class);
+        try {
+            return Cache.getObject(join(inFile, blobID), Blob.class);
+        } catch (IllegalArgumentException excp) {
+            // left out by a partial clone: copy it from the remote now.
+            if (!Clone.fetchMissing(blobID)) {
+                throw excp;
+            }
+            return Cache.getObject(join(inFile, blobID), Blob.class);
+        }
     }
 }
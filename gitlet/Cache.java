@@ -0,0 +1,331 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import static gitlet.Utils.*;
+
+/** In-memory copies of the files under .gitlet, shared by all the commands
+ *  run in one JVM.
+ *
+ *  Objects (commits and blobs) are named by their SHA-1 and never change
+ *  once written, so they are kept in an LRU map bounded by the size of
+ *  their files and decoded at most once while they stay there.
+ *
+ *  Mutable files (head, refs and the staging area) are written through to
+ *  disk, by renaming a temporary file over them, and remembered together
+ *  with the size, modification time and file key they had afterwards.  A
+ *  long-running process calls revalidate() before each command, which
+ *  drops every entry whose file has since been changed by somebody else.
+ *  After deferWrites(), writes to mutable files are only recorded in
+ *  memory until the next flush(), so a batch of commands rewrites the
+ *  staging area and refs once.
+ */
+public class Cache {
+    /** Most bytes of decoded objects kept in memory, counting each object
+     *  as the size of its file plus OVERHEAD. */
+    private static final long MAX_BYTES = 64L << 20;
+
+    /** Bytes counted for each object besides its file. */
+    private static final long OVERHEAD = 256;
+
+    /** Decoded commits and blobs, keyed by absolute path, least recently
+     *  used first.  Guarded by itself, since commands may read objects
+     *  from several threads. */
+    private static final LinkedHashMap<String, Decoded> OBJECTS =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Bytes counted for the objects in OBJECTS. */
+    private static long objectBytes;
+
+    /** A decoded object and the bytes it is counted for. */
+    private static class Decoded {
+        private final Serializable value;
+        private final long size;
+
+        Decoded(Serializable value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /** Contents of mutable files, keyed by absolute path. */
+    private static final Map<String, Entry> FILES = new HashMap<>();
+
+    /** The folder of temporary files of this repository. */
+    static final File TMP_DIR = join(".gitlet", "tmp");
+
+    /** The folder of temporary files for each folder written to. */
+    private static final Map<String, File> TMP_DIRS = new ConcurrentHashMap<>();
+
+    /** Number of temporary files made so far. */
+    private static final AtomicLong TMP_COUNT = new AtomicLong();
+
+    /** Whether writes to mutable files wait for flush(). */
+    private static boolean deferred;
+
+    /** A cached mutable file: its contents and the stamp they belong to. */
+    private static class Entry {
+        /** The String or deserialized object held in the file, or null
+         *  if the file has been deleted but not flushed yet. */
+        private final Object value;
+        /** Attributes of the file when VALUE was read or written. */
+        private final Stamp stamp;
+        /** Whether VALUE still has to be written to the file. */
+        private final boolean dirty;
+
+        Entry(Object value, Stamp stamp, boolean dirty) {
+            this.value = value;
+            this.stamp = stamp;
+            this.dirty = dirty;
+        }
+    }
+
+    /** The attributes used to tell whether a file changed underneath us. */
+    private static class Stamp {
+        private final long size;
+        private final FileTime modified;
+        private final Object key;
+
+        Stamp(BasicFileAttributes attrs) {
+            size = attrs.size();
+            modified = attrs.lastModifiedTime();
+            key = attrs.fileKey();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Stamp)) {
+                return false;
+            }
+            Stamp s = (Stamp) o;
+            return size == s.size && modified.equals(s.modified) && Objects.equals(key, s.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, modified, key);
+        }
+    }
+
+    /** get the immutable object stored in FILE. */
+    public static <T extends Serializable> T getObject(File file, Class<T> expectedClass) {
+        String key = file.getAbsolutePath();
+        Decoded d;
+        synchronized (OBJECTS) {
+            d = OBJECTS.get(key);
+        }
+        if (d == null) {
+            d = new Decoded(readObject(file, expectedClass), file.length() + OVERHEAD);
+            Stats.decoded();
+            synchronized (OBJECTS) {
+                Decoded old = OBJECTS.put(key, d);
+                objectBytes += d.size - (old == null ? 0 : old.size);
+                Iterator<Decoded> eldest = OBJECTS.values().iterator();
+                while (objectBytes > MAX_BYTES && eldest.hasNext()) {
+                    objectBytes -= eldest.next().size;
+                    eldest.remove();
+                }
+            }
+        } else {
+            Stats.cacheHit();
+        }
+        return expectedClass.cast(d.value);
+    }
+
+    /** get the contents of the mutable file FILE as a String. */
+    public static String getString(File file) {
+        Entry e = FILES.get(file.getAbsolutePath());
+        if (e == null) {
+            String contents = readContentsAsString(file);
+            e = remember(file, contents);
+        } else if (e.value == null) {
+            throw new IllegalArgumentException("must be a normal file");
+        } else {
+            Stats.cacheHit();
+        }
+        return (String) e.value;
+    }
+
+    /** write CONTENTS to the mutable file FILE. */
+    public static void putString(File file, String contents) {
+        if (deferred) {
+            FILES.put(file.getAbsolutePath(), new Entry(contents, null, true));
+        } else {
+            write(file, contents);
+            remember(file, contents);
+        }
+    }
+
+    /** get the object stored in the mutable file FILE. */
+    public static <T extends Serializable> T getState(File file, Class<T> expectedClass) {
+        Entry e = FILES.get(file.getAbsolutePath());
+        if (e == null) {
+            T obj = readObject(file, expectedClass);
+            Stats.decoded();
+            e = remember(file, obj);
+        } else if (e.value == null) {
+            throw new IllegalArgumentException("must be a normal file");
+        } else {
+            Stats.cacheHit();
+        }
+        return expectedClass.cast(e.value);
+    }
+
+    /** write OBJ to the mutable file FILE. */
+    public static void putState(File file, Serializable obj) {
+        if (deferred) {
+            FILES.put(file.getAbsolutePath(), new Entry(obj, null, true));
+        } else {
+            write(file, obj);
+            remember(file, obj);
+        }
+    }
+
+    /** check if the mutable file FILE exists. */
+    public static boolean exists(File file) {
+        Entry e = FILES.get(file.getAbsolutePath());
+        return e != null ? e.value != null : file.exists();
+    }
+
+    /** delete the mutable file FILE. */
+    public static void delete(File file) {
+        if (deferred) {
+            FILES.put(file.getAbsolutePath(), new Entry(null, null, true));
+        } else {
+            FILES.remove(file.getAbsolutePath());
+            file.delete();
+        }
+    }
+
+    /** get the names of the plain files in DIR in lexicographic order,
+     *  including the ones written but not flushed yet. */
+    public static List<String> list(File dir) {
+        Set<String> names = new TreeSet<>(plainFilenamesIn(dir));
+        String path = dir.getAbsolutePath();
+        for (Map.Entry<String, Entry> e : FILES.entrySet()) {
+            File f = new File(e.getKey());
+            if (e.getValue().dirty && f.getParent().equals(path)) {
+                if (e.getValue().value == null) {
+                    names.remove(f.getName());
+                } else {
+                    names.add(f.getName());
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /** hold writes to mutable files in memory until flush(). */
+    public static void deferWrites() {
+        deferred = true;
+    }
+
+    /** check if writes to mutable files wait for flush(). */
+    public static boolean deferring() {
+        return deferred;
+    }
+
+    /** write out every mutable file changed since the last flush. */
+    public static void flush() {
+        for (Map.Entry<String, Entry> e : new ArrayList<>(FILES.entrySet())) {
+            if (!e.getValue().dirty) {
+                continue;
+            }
+            File file = new File(e.getKey());
+            Object value = e.getValue().value;
+            if (value == null) {
+                file.delete();
+                FILES.remove(e.getKey());
+            } else {
+                write(file, value);
+                remember(file, value);
+            }
+        }
+    }
+
+    /** drop every mutable entry whose file was changed by another process. */
+    public static void revalidate() {
+        FILES.entrySet().removeIf(e -> !e.getValue().dirty && (e.getValue().stamp == null
+            || !e.getValue().stamp.equals(stamp(new File(e.getKey())))));
+    }
+
+    /** drop all the mutable entries that are not waiting to be written,
+     *  e.g. after a command failed half way. */
+    public static void invalidate() {
+        FILES.entrySet().removeIf(e -> !e.getValue().dirty);
+    }
+
+    /** write VALUE, a String or an object, to FILE through a temporary
+     *  file renamed over it, so that readers see either the old contents or
+     *  the new ones. */
+    static void write(File file, Object value) {
+        File tmp = tmpFile(file);
+        if (value instanceof String) {
+            writeContents(tmp, value);
+        } else {
+            writeObject(tmp, (Serializable) value);
+        }
+        rename(tmp, file);
+    }
+
+    /** get a new temporary file to be renamed over FILE.  It is in the tmp
+     *  folder of the .gitlet directory holding FILE, so that it is on the
+     *  same file system but never among the objects or refs, and its name
+     *  is unique to this process and call. */
+    static File tmpFile(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File dir = TMP_DIRS.computeIfAbsent(parent.getPath(), p -> {
+            for (File d = parent; d != null; d = d.getParentFile()) {
+                if (join(d, "objects").isDirectory()) {
+                    return join(d, TMP_DIR.getName());
+                }
+            }
+            return parent;
+        });
+        dir.mkdirs();
+        return join(dir, file.getName() + "." + ProcessHandle.current().pid()
+                    + "-" + TMP_COUNT.incrementAndGet() + ".tmp");
+    }
+
+    /** rename the temporary file TMP over FILE at once. */
+    static void rename(File tmp, File file) {
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** record VALUE as the current contents of FILE. */
+    private static Entry remember(File file, Object value) {
+        Entry e = new Entry(value, stamp(file), false);
+        FILES.put(file.getAbsolutePath(), e);
+        return e;
+    }
+
+    /** get the stamp of FILE, or null if it cannot be read. */
+    private static Stamp stamp(File file) {
+        try {
+            return new Stamp(Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+}
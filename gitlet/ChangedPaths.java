@@ -0,0 +1,187 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import static gitlet.Utils.*;
+
+/** Bloom filters of the paths each commit changed, for log -- PATH.
+ *
+ *  When a commit is made, a record with its id, its parents and a Bloom
+ *  filter of the paths it changed relative to its first parent is appended
+ *  to .gitlet/changed-paths.  A path-limited log then walks the history
+ *  through these records and decodes only the commits whose filter may
+ *  contain the path; a filter never misses a path it holds, and answers
+ *  yes for other paths about 1% of the time.  Commits without a record,
+ *  e.g. ones fetched from a remote, are decoded and compared with their
+ *  parent instead.
+ *
+ *  Each record is framed by MAGIC, the length of the rest and its CRC-32,
+ *  so that one torn by a crash mid-append is skipped instead of shifting
+ *  how every later record is read.
+ *
+ *  Filters use BITS bits per path and HASHES hash functions derived from
+ *  two 32-bit hashes of the path (double hashing).
+ */
+public class ChangedPaths {
+    /** The file of the records. */
+    static final File FILE = join(".gitlet", "changed-paths");
+
+    /** Bits of filter per changed path. */
+    private static final int BITS = 10;
+    /** Number of hash functions. */
+    private static final int HASHES = 7;
+
+    /** First int of every record. */
+    private static final int MAGIC = 0x67435031;
+    /** Bytes before the body of a record: MAGIC, its length and its CRC-32. */
+    private static final int HEADER = 12;
+
+    /** The record of one commit. */
+    static class Entry {
+        /** The parents of the commit. */
+        final List<String> parents;
+        /** The filter of its changed paths. */
+        private final byte[] filter;
+
+        Entry(List<String> parents, byte[] filter) {
+            this.parents = parents;
+            this.filter = filter;
+        }
+
+        /** check if the commit may have changed PATH. */
+        boolean mightContain(String path) {
+            long bits = filter.length * 8L;
+            int[] h = hashes(path);
+            for (int i = 0; i < HASHES; i += 1) {
+                long bit = Integer.toUnsignedLong(h[0] + i * h[1]) % bits;
+                if ((filter[(int) (bit / 8)] & (1 << (bit % 8))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** append the record of the commit C, which changed PATHS. */
+    public static void record(Commit c, Collection<String> paths) {
+        int size = Math.max(1, (paths.size() * BITS + 7) / 8);
+        byte[] filter = new byte[size];
+        long bits = size * 8L;
+        for (String path : paths) {
+            int[] h = hashes(path);
+            for (int i = 0; i < HASHES; i += 1) {
+                long bit = Integer.toUnsignedLong(h[0] + i * h[1]) % bits;
+                filter[(int) (bit / 8)] |= 1 << (bit % 8);
+            }
+        }
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeUTF(c.getID());
+            out.writeByte(c.getParent().size());
+            for (String parent : c.getParent()) {
+                out.writeUTF(parent);
+            }
+            out.writeInt(size);
+            out.write(filter);
+            out.close();
+            CRC32 crc = new CRC32();
+            crc.update(body.toByteArray());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(bytes);
+            record.writeInt(MAGIC);
+            record.writeInt(body.size());
+            record.writeInt((int) crc.getValue());
+            body.writeTo(record);
+            record.close();
+            Files.write(FILE.toPath(), bytes.toByteArray(),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            Stats.write(bytes.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** get the records of all the commits, keyed by commit id.  A record
+     *  that is cut short or damaged, e.g. by a crash while it was appended,
+     *  is skipped: the next record is found by its MAGIC and checksum
+     *  rather than by the damaged record's length. */
+    public static Map<String, Entry> load() {
+        Map<String, Entry> result = new HashMap<>();
+        if (!FILE.isFile()) {
+            return result;
+        }
+        byte[] data = readContents(FILE);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int pos = 0;
+        while (pos + HEADER <= data.length) {
+            int length = buf.getInt(pos + 4);
+            if (buf.getInt(pos) != MAGIC || length < 0 || length > data.length - pos - HEADER) {
+                pos += 1;
+                continue;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, pos + HEADER, length);
+            if ((int) crc.getValue() != buf.getInt(pos + 8)
+                || !parse(data, pos + HEADER, length, result)) {
+                pos += 1;
+                continue;
+            }
+            pos += HEADER + length;
+        }
+        return result;
+    }
+
+    /** add to RESULT the record in the LENGTH bytes of DATA at OFFSET.
+     *  Returns false if they do not hold exactly one record. */
+    private static boolean parse(byte[] data, int offset, int length,
+                                 Map<String, Entry> result) {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data, offset, length);
+        try (DataInputStream in = new DataInputStream(bytes)) {
+            String id = in.readUTF();
+            int n = in.readUnsignedByte();
+            List<String> parents = new ArrayList<>(n);
+            for (int i = 0; i < n; i += 1) {
+                parents.add(in.readUTF());
+            }
+            int size = in.readInt();
+            if (size <= 0 || size != bytes.available()) {
+                return false;
+            }
+            byte[] filter = new byte[size];
+            in.readFully(filter);
+            result.put(id, new Entry(parents, filter));
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** get the two base hashes of PATH (FNV-1a and a murmur-style mix). */
+    private static int[] hashes(String path) {
+        int h1 = 0x811c9dc5;
+        int h2 = 0x9747b28c;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            h1 = (h1 ^ (b & 0xff)) * 0x01000193;
+            h2 = Integer.rotateLeft(h2 ^ ((b & 0xff) * 0xcc9e2d51), 13) * 5 + 0xe6546b64;
+        }
+        h2 ^= h2 >>> 16;
+        h2 *= 0x85ebca6b;
+        h2 ^= h2 >>> 13;
+        return new int[] {h1, h2 | 1};
+    }
+}
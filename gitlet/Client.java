@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/** A thin client for Daemon.  Usage is the same as for Main:
+ *      java gitlet.Client ARGS
+ *  forwards ARGS to the daemon serving the repository in the current
+ *  directory and prints its output, or runs the command in this JVM when no
+ *  daemon is listening.
+ */
+public class Client {
+    /** The socket of the daemon, see Daemon.SOCKET. */
+    private static final Path SOCKET = Paths.get(".gitlet", "daemon.sock");
+
+    public static void main(String[] args) {
+        try {
+            if (!send(args, System.out, System.err)) {
+                Main.main(args);
+            }
+        } catch (GitletException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /** Send ARGS to the daemon and copy what it prints to OUT, and what it
+     *  prints on its standard error to ERR.  Returns false if there is no
+     *  daemon to talk to. */
+    static boolean send(String[] args, OutputStream out, OutputStream err) {
+        if (!Files.exists(SOCKET)) {
+            return false;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(SOCKET));
+        } catch (IOException excp) {
+            return false;
+        }
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            DataInputStream response = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            byte[] buffer = new byte[8192];
+            int stream;
+            while ((stream = response.read()) >= 0) {
+                OutputStream dest = stream == Daemon.ERR ? err : out;
+                if (dest == err) {
+                    out.flush();
+                }
+                for (int left = response.readInt(); left > 0; ) {
+                    int n = response.read(buffer, 0, Math.min(left, buffer.length));
+                    if (n < 0) {
+                        throw new EOFException();
+                    }
+                    dest.write(buffer, 0, n);
+                    left -= n;
+                }
+            }
+            out.flush();
+            err.flush();
+            return true;
+        } catch (IOException excp) {
+            throw new GitletException("Lost connection to the daemon.");
+        }
+    }
+}
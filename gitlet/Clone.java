@@ -0,0 +1,235 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import static gitlet.Utils.*;
+
+/** The clone command, with shallow and partial clones.
+ *
+ *  clone copies the commits and blobs of the branches of another .gitlet
+ *  directory, keeps it as the remote origin, and checks out its current
+ *  branch.  With --depth N only the last N generations of commits are
+ *  copied; the commits whose parents were left behind are listed in
+ *  .gitlet/shallow, and the commands walking the history treat them as
+ *  having no parents (see parents()).  With --filter=blob:limit=SIZE the
+ *  blobs whose files take more than SIZE bytes are left behind, and the
+ *  remote is recorded in .gitlet/promisor: whenever a missing blob is
+ *  read, it is copied from there then (see fetchMissing()).
+ */
+public class Clone {
+    /** The commits whose parents are not in this repository. */
+    static final File SHALLOW = join(".gitlet", "shallow");
+
+    /** The remote that has the blobs left out of this repository. */
+    static final File PROMISOR = join(".gitlet", "promisor");
+
+    /** The name given to the repository cloned. */
+    static final String ORIGIN = "origin";
+
+    /** The contents of SHALLOW that BOUNDARY was read from. */
+    private static String shallowContents;
+
+    /** The commits listed in SHALLOW. */
+    private static Set<String> boundary = Collections.emptySet();
+
+    /** For clone [path] [--depth N] [--filter=blob:limit=SIZE]: clone the
+     *  repository in the .gitlet directory PATH, keeping DEPTH generations
+     *  (0 for all) and the blobs of at most LIMIT bytes (-1 for all). */
+    public static void clone(String path, int depth, long limit) {
+        if (Repository.GITLET_DIR.exists()) {
+            throw error("A Gitlet version-control system already exists in the current directory.");
+        }
+        File source = new File(path.replace("/", File.separator));
+        if (!source.isAbsolute()) {
+            source = join(Repository.CWD, source.getPath());
+        }
+        if (!join(source, "head").isFile()) {
+            throw error("Remote directory not found.");
+        }
+        Map<String, String> branches = new TreeMap<>();
+        for (String branch : Heads.branches(source)) {
+            branches.put(branch, Heads.branchID(source, branch));
+        }
+        String current = readContentsAsString(join(source, "head"));
+        checkUntracked(Cache.getObject(Remote.object(source, "commits", branches.get(current)),
+                                       Commit.class));
+
+        // walk the history one generation at a time, up to DEPTH of them.
+        long t = Stats.start();
+        Set<String> commits = new LinkedHashSet<>();
+        Set<String> blobs = new LinkedHashSet<>();
+        Set<String> shallow = new HashSet<>();
+        Set<String> sourceShallow = shallowIn(source);
+        List<String> fringe = new ArrayList<>(new LinkedHashSet<>(branches.values()));
+        for (int generation = 1; !fringe.isEmpty(); generation += 1) {
+            List<String> next = new ArrayList<>();
+            for (String id : fringe) {
+                if (!commits.add(id)) {
+                    continue;
+                }
+                Commit c = Cache.getObject(Remote.object(source, "commits", id), Commit.class);
+                blobs.addAll(c.getToBlobs().values());
+                if (sourceShallow.contains(id)
+                    || depth > 0 && generation == depth && !c.getParent().isEmpty()) {
+                    shallow.add(id);
+                } else {
+                    next.addAll(c.getParent());
+                }
+            }
+            fringe = next;
+        }
+        // a commit reached through a longer path is not shallow after all.
+        for (String id : commits) {
+            if (shallow.contains(id) && !sourceShallow.contains(id)) {
+                Commit c = Cache.getObject(Remote.object(source, "commits", id), Commit.class);
+                if (commits.containsAll(c.getParent())) {
+                    shallow.remove(id);
+                }
+            }
+        }
+        Stats.phase("walk", t);
+
+        t = Stats.start();
+        Repository.createDirectories();
+        for (String id : blobs) {
+            File object = Remote.object(source, "blobs", id);
+            File data = Remote.object(source, "data", id);
+            long size = object.length() + (data.isFile() ? data.length() : 0);
+            if (limit >= 0 && size > limit) {
+                continue;
+            }
+            if (data.isFile()) {
+                Remote.copy(data, Remote.object(Repository.GITLET_DIR, "data", id));
+            }
+            Remote.copy(object, Remote.object(Repository.GITLET_DIR, "blobs", id));
+        }
+        for (String id : commits) {
+            Remote.copy(Remote.object(source, "commits", id),
+                        Remote.object(Repository.GITLET_DIR, "commits", id));
+        }
+        Stats.phase("copyObjects", t);
+
+        if (!shallow.isEmpty()) {
+            Cache.putString(SHALLOW, String.join("\n", new TreeSet<>(shallow)) + "\n");
+        }
+        Remote.addRemote(ORIGIN, source.getPath());
+        if (limit >= 0) {
+            Cache.putString(PROMISOR, ORIGIN);
+        }
+        for (Map.Entry<String, String> e : branches.entrySet()) {
+            Heads.setBranchID(e.getKey(), e.getValue());
+        }
+        Heads.changeBranch(current);
+
+        t = Stats.start();
+        for (Map.Entry<String, String> e : Heads.getCurrent().getToBlobs().entrySet()) {
+            if (Sparse.includes(e.getKey())) {
+                Blob.checkout(e.getValue(), join(Repository.CWD, e.getKey()));
+            }
+        }
+        Stats.phase("writeFiles", t);
+    }
+
+    /** check that checking out the commit C will not overwrite a file in
+     *  the working directory, which nothing tracks yet, with other contents. */
+    private static void checkUntracked(Commit c) {
+        for (Map.Entry<String, String> e : c.getToBlobs().entrySet()) {
+            String id = WorkTree.blobID(e.getKey());
+            if (id != null && !id.equals(e.getValue())) {
+                throw error("There is an untracked file in the way; delete it, "
+                            + "or add and commit it first.");
+            }
+        }
+    }
+
+    /** get the parents of the commit C that are in this repository: none
+     *  for a commit at the edge of a shallow clone. */
+    public static List<String> parents(Commit c) {
+        if (!c.getParent().isEmpty() && isShallow(c.getID())) {
+            return Collections.emptyList();
+        }
+        return c.getParent();
+    }
+
+    /** check if the parents of the commit ID were left out by a shallow clone. */
+    public static synchronized boolean isShallow(String id) {
+        if (!Cache.exists(SHALLOW)) {
+            return false;
+        }
+        String contents = Cache.getString(SHALLOW);
+        if (contents != shallowContents) {
+            boundary = parseShallow(contents);
+            shallowContents = contents;
+        }
+        return boundary.contains(id);
+    }
+
+    /** get the commits whose parents were left out of the repository in
+     *  the .gitlet directory DIR by a shallow clone. */
+    static Set<String> shallowIn(File dir) {
+        File f = join(dir, SHALLOW.getName());
+        if (!f.isFile()) {
+            return Collections.emptySet();
+        }
+        return parseShallow(readContentsAsString(f));
+    }
+
+    /** record that the parents of the commits IDS are not in this repository. */
+    static synchronized void addShallow(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<String> result = new TreeSet<>(ids);
+        if (Cache.exists(SHALLOW)) {
+            result.addAll(parseShallow(Cache.getString(SHALLOW)));
+        }
+        Cache.putString(SHALLOW, String.join("\n", result) + "\n");
+    }
+
+    /** get the commits listed in CONTENTS, the contents of a shallow file. */
+    private static Set<String> parseShallow(String contents) {
+        Set<String> result = new HashSet<>();
+        for (String line : contents.split("\n")) {
+            if (!line.isEmpty()) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    /** check if blobs may be missing because of a partial clone. */
+    public static boolean isPartial() {
+        return Cache.exists(PROMISOR);
+    }
+
+    /** copy the blob BLOBID from the remote that has the blobs left out by
+     *  a partial clone.  Returns false if there is no such remote or it
+     *  lacks the blob. */
+    public static boolean fetchMissing(String blobID) {
+        if (!isPartial()) {
+            return false;
+        }
+        File remote = Remote.remoteDir(Cache.getString(PROMISOR));
+        File object = Remote.object(remote, "blobs", blobID);
+        if (!object.isFile()) {
+            return false;
+        }
+        long t = Stats.start();
+        File data = Remote.object(remote, "data", blobID);
+        if (data.isFile()) {
+            Remote.copy(data, Remote.object(Repository.GITLET_DIR, "data", blobID));
+        }
+        Remote.copy(object, Remote.object(Repository.GITLET_DIR, "blobs", blobID));
+        Stats.phase("fetchMissing", t);
+        return true;
+    }
+}
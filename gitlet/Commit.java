@@ -5,6 +5,9 @@ import java.util.*;
 import static gitlet.Utils.*;
 
 public class Commit implements Serializable {
+    /** Fixed so that adding methods does not break existing repositories. */
+    private static final long serialVersionUID = -6852331765286115119L;
+
     /** The message of this Commit. */
     private final String message;
 
@@ -36,8 +39,7 @@ public class Commit implements Serializable {
             parent.add(Heads.getBranchID(branch));
         }
         this.toBlobs = modifyBlobs();
-        this.ID = sha1(this.message, this.date.toString(), this.toBlobs.toString(),
-                this.parent.toString());
+        this.ID = computeID();
     }
 
     /** initial commit. */
@@ -45,8 +47,36 @@ public class Commit implements Serializable {
         this.date = new Date(0);
         this.message = "initial commit";
         this.parent = new LinkedList<>();
-        this.ID = sha1(this.message, this.date.toString(), this.toBlobs.toString(),
-                this.parent.toString());
+        this.ID = computeID();
+    }
+
+    /** a commit with the given contents, for tools that build history
+     *  without going through the staging area (see Generator). */
+    Commit(String message, Date date, List<String> parent, Map<String, String> toBlobs) {
+        this.date = date;
+        this.message = message;
+        this.parent = new LinkedList<>(parent);
+        this.toBlobs = new TreeMap<>(toBlobs);
+        this.ID = computeID();
+    }
+
+    /** compute the SHA-1 of this commit from its contents: the hash of
+     *  the message, the date, the map and the parents as toString() shows
+     *  them, streamed entry by entry rather than built as one String. */
+    String computeID() {
+        Sha1 h = Sha1.start().update(message).update(date.toString()).update('{');
+        String separator = "";
+        for (Map.Entry<String, String> e : toBlobs.entrySet()) {
+            h.update(separator).update(e.getKey()).update('=').updateAscii(e.getValue());
+            separator = ", ";
+        }
+        h.update('}').update('[');
+        separator = "";
+        for (String p : parent) {
+            h.update(separator).updateAscii(p);
+            separator = ", ";
+        }
+        return h.update(']').hex();
     }
 
     /** get SHA-1 for this commit. */
@@ -75,13 +105,13 @@ public class Commit implements Serializable {
         if (!commitFolder.exists()) {
             commitFolder.mkdir();
         }
-        writeObject(join(commitFolder, ID), this);
+        Cache.write(join(commitFolder, ID), this);
     }
 
     /** get the specified commit using commit ID. */
     public static Commit getCommit(String commitID) {
         File inFile = join(COMMITS_DIR, commitID.substring(0, 2));
-        return readObject(join(inFile, commitID), Commit.class);
+        return Cache.getObject(join(inFile, commitID), Commit.class);
     }
 
     /** get the map of name to reference to blobs. */
@@ -93,9 +123,9 @@ public class Commit implements Serializable {
     public static Map<String, String> modifyBlobs() {
         Commit parent = Heads.getCurrent();
         Staging s = Staging.getStage();
-        Map<String, String> newBlobs = parent.getToBlobs();
+        Map<String, String> newBlobs = new TreeMap<>(parent.getToBlobs());
         Map<String, String> stagingBlobs = s.getToBlobs();
-        List<String> removingBlobs = s.getToRemoves();
+        Set<String> removingBlobs = s.getToRemoves();
         if (stagingBlobs != null) {
             for (String key: stagingBlobs.keySet()) {
                 newBlobs.put(key, stagingBlobs.get(key));
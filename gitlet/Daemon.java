@@ -0,0 +1,172 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static gitlet.Utils.*;
+
+/** A long-running server that executes gitlet commands for the repository in
+ *  the current directory, so that scripts issuing many commands pay for JVM
+ *  startup and class loading once and reuse the objects held in Cache.
+ *
+ *  Started with "java gitlet.Main daemon" and stopped with
+ *  "java gitlet.Main daemon stop".  Commands are sent by Client over the Unix
+ *  domain socket .gitlet/daemon.sock as an int count followed by the
+ *  arguments written with DataOutputStream.writeUTF; everything the command
+ *  prints is sent back and the connection is closed.  The output comes in
+ *  frames, each a byte telling the stream (OUT or ERR), an int length and
+ *  that many bytes, so that the client prints the "--stats" summary on its
+ *  own standard error.  Commands run one at a
+ *  time, and before each one Cache drops whatever was changed in .gitlet by
+ *  other processes and WorkTree takes in the changes to the working
+ *  directory reported by its watcher.
+ */
+public class Daemon {
+    /** The socket the daemon listens on. */
+    public static final File SOCKET = join(".gitlet", "daemon.sock");
+
+    /** The streams of the output frames. */
+    static final int OUT = 1, ERR = 2;
+
+    /** Serve commands until asked to stop. */
+    public static void serve() {
+        if (SOCKET.exists()) {
+            if (Client.send(new String[] {"daemon", "ping"}, System.out, System.err)) {
+                throw error("A daemon is already running.");
+            }
+            SOCKET.delete();
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET.toPath()));
+            WorkTree.watch();
+            boolean running = true;
+            while (running) {
+                try (SocketChannel channel = server.accept()) {
+                    running = handle(channel);
+                } catch (IOException excp) {
+                    // the client went away; wait for the next one.
+                }
+            }
+        } catch (IOException excp) {
+            throw error("Cannot start the daemon: %s", excp.getMessage());
+        } finally {
+            WorkTree.unwatch();
+            SOCKET.delete();
+        }
+    }
+
+    /** Ask the running daemon to stop. */
+    public static void stop() {
+        if (!Client.send(new String[] {"daemon", "stop"}, System.out, System.err)) {
+            throw error("No daemon is running.");
+        }
+    }
+
+    /** Run the command sent over CHANNEL.  Returns false once asked to stop. */
+    private static boolean handle(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i += 1) {
+            args[i] = in.readUTF();
+        }
+        DataOutputStream sink = new DataOutputStream(Channels.newOutputStream(channel));
+        PrintStream out = new PrintStream(new BufferedOutputStream(new Frames(sink, OUT)),
+                                          false, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new BufferedOutputStream(new Frames(sink, ERR)),
+                                          false, StandardCharsets.UTF_8);
+        boolean stats = args.length > 0 && args[0].equals("--stats");
+        if (stats) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        if (args.length > 0 && args[0].equals("daemon")) {
+            if (args.length == 2 && args[1].equals("stop")) {
+                out.flush();
+                return false;
+            } else if (!(args.length == 2 && args[1].equals("ping"))) {
+                out.println("A daemon is already running.");
+            }
+            out.flush();
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equals("batch")) {
+            out.println("Cannot run batch through the daemon.");
+            out.flush();
+            return true;
+        }
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        System.setOut(out);
+        System.setErr(err);
+        try {
+            if (stats) {
+                Stats.requestOnce();
+            }
+            Stats.begin(args);
+            Cache.revalidate();
+            Heads.forget();
+            WorkTree.sync();
+            Main.run(args);
+        } catch (GitletException e) {
+            message(e.getMessage());
+            Cache.invalidate();
+            Heads.forget();
+        } catch (RuntimeException e) {
+            e.printStackTrace(out);
+            Cache.invalidate();
+            Heads.forget();
+        } finally {
+            Locks.release();
+            Stats.end();
+            System.setOut(stdout);
+            System.setErr(stderr);
+            out.flush();
+            err.flush();
+        }
+        return true;
+    }
+
+    /** The stream STREAM of the output, written as frames to SINK. */
+    private static class Frames extends OutputStream {
+        private final DataOutputStream sink;
+        private final int stream;
+
+        Frames(DataOutputStream sink, int stream) {
+            this.sink = sink;
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            sink.writeByte(stream);
+            sink.writeInt(len);
+            sink.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            sink.flush();
+        }
+    }
+}
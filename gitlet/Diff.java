@@ -0,0 +1,305 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Line-by-line differences between two texts.
+ *
+ *  Uses Myers' O(ND) algorithm in its linear-space form: the middle snake
+ *  of the edit graph is found by searching forwards and backwards at once,
+ *  and the two halves are solved recursively ("An O(ND) Difference
+ *  Algorithm and Its Variations", E. Myers, 1986).  Lines are numbered
+ *  first so that the search compares ints.  Lines that do not occur in the
+ *  other text at all can never be matched, so they are marked as deleted
+ *  or inserted at once and the search runs on the remaining lines only:
+ *  texts with nothing in common, or a large insertion or deletion of new
+ *  lines, cost no search.  The common prefix and suffix of every
+ *  subproblem are also skipped before searching.  Apart from the input,
+ *  the space used is linear in the number of lines.
+ */
+public class Diff {
+
+    /** A run of changed lines: lines [aStart, aEnd) of the first text are
+     *  replaced by lines [bStart, bEnd) of the second.  Either range may be
+     *  empty. */
+    public static class Edit {
+        public final int aStart;
+        public final int aEnd;
+        public final int bStart;
+        public final int bEnd;
+
+        Edit(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+    }
+
+    /** The lines of the first text that occur in the second, as numbers. */
+    private final int[] a;
+    /** The lines of the second text that occur in the first, as numbers. */
+    private final int[] b;
+    /** The index in its text of each line of A and of B. */
+    private final int[] aIndex;
+    private final int[] bIndex;
+    /** Whether each line of the first text is deleted. */
+    private final boolean[] deleted;
+    /** Whether each line of the second text is inserted. */
+    private final boolean[] inserted;
+    /** Work arrays of the forward and backward searches. */
+    private final int[] forward;
+    private final int[] backward;
+
+    private Diff(List<String> x, List<String> y) {
+        Map<String, Integer> numbers = new HashMap<>();
+        int[] xs = number(x, numbers);
+        int[] ys = number(y, numbers);
+        boolean[] inX = new boolean[numbers.size()];
+        boolean[] inY = new boolean[numbers.size()];
+        for (int n : xs) {
+            inX[n] = true;
+        }
+        for (int n : ys) {
+            inY[n] = true;
+        }
+        deleted = new boolean[xs.length];
+        inserted = new boolean[ys.length];
+        aIndex = common(xs, inY, deleted);
+        bIndex = common(ys, inX, inserted);
+        a = new int[aIndex.length];
+        for (int i = 0; i < a.length; i += 1) {
+            a[i] = xs[aIndex[i]];
+        }
+        b = new int[bIndex.length];
+        for (int j = 0; j < b.length; j += 1) {
+            b[j] = ys[bIndex[j]];
+        }
+        int size = 2 * ((a.length + b.length + 1) / 2) + 2;
+        forward = new int[size];
+        backward = new int[size];
+    }
+
+    /** get the edits turning the lines X into the lines Y, in order. */
+    public static List<Edit> diff(List<String> x, List<String> y) {
+        Diff d = new Diff(x, y);
+        d.compare(0, d.a.length, 0, d.b.length);
+        return d.edits();
+    }
+
+    /** add the edits from the lines X to the lines Y to OUT, as the hunks
+     *  of a unified diff without context lines. */
+    public static void unified(List<String> x, List<String> y, StringBuilder out) {
+        for (Edit e : diff(x, y)) {
+            out.append("@@ -").append(range(e.aStart, e.aEnd))
+                .append(" +").append(range(e.bStart, e.bEnd)).append(" @@\n");
+            for (int i = e.aStart; i < e.aEnd; i += 1) {
+                line(out, '-', x.get(i));
+            }
+            for (int j = e.bStart; j < e.bEnd; j += 1) {
+                line(out, '+', y.get(j));
+            }
+        }
+    }
+
+    /** get the hunk header form of lines [START, END): the first line and
+     *  the count, where an empty range is named by the line before it. */
+    private static String range(int start, int end) {
+        if (end - start == 1) {
+            return Integer.toString(start + 1);
+        } else if (end == start) {
+            return start + ",0";
+        }
+        return (start + 1) + "," + (end - start);
+    }
+
+    /** add LINE to OUT with the prefix MARK. */
+    private static void line(StringBuilder out, char mark, String line) {
+        out.append(mark).append(line);
+        if (!line.endsWith("\n")) {
+            out.append('\n');
+        }
+    }
+
+    /** split TEXT into lines, each keeping its line terminator. */
+    public static List<String> lines(String text) {
+        List<String> result = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end < 0 ? text.length() : end + 1;
+            result.add(text.substring(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    /** number the LINES so that equal lines get equal numbers. */
+    private static int[] number(List<String> lines, Map<String, Integer> numbers) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            Integer n = numbers.putIfAbsent(lines.get(i), numbers.size());
+            result[i] = n == null ? numbers.size() - 1 : n;
+        }
+        return result;
+    }
+
+    /** get the indices of the LINES found in the other text, as told by
+     *  OTHER, marking the rest in CHANGED. */
+    private static int[] common(int[] lines, boolean[] other, boolean[] changed) {
+        int[] result = new int[lines.length];
+        int count = 0;
+        for (int i = 0; i < lines.length; i += 1) {
+            if (other[lines[i]]) {
+                result[count++] = i;
+            } else {
+                changed[i] = true;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** mark the changes between A[aLo, aHi) and B[bLo, bHi). */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi) {
+            for (int j = bLo; j < bHi; j += 1) {
+                inserted[bIndex[j]] = true;
+            }
+        } else if (bLo == bHi) {
+            for (int i = aLo; i < aHi; i += 1) {
+                deleted[aIndex[i]] = true;
+            }
+        } else {
+            long split = middleSnake(aLo, aHi, bLo, bHi);
+            if (split < 0) {
+                for (int i = aLo; i < aHi; i += 1) {
+                    deleted[aIndex[i]] = true;
+                }
+                for (int j = bLo; j < bHi; j += 1) {
+                    inserted[bIndex[j]] = true;
+                }
+                return;
+            }
+            int x = (int) (split >>> 32);
+            int y = (int) split;
+            compare(aLo, x, bLo, y);
+            compare(x, aHi, y, bHi);
+        }
+    }
+
+    /** find where a shortest edit script from A[aLo, aHi) to B[bLo, bHi)
+     *  crosses its middle diagonal.  Returns the point as (x << 32 | y),
+     *  or -1 if the ranges have nothing in common. */
+    private long middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        for (int i = 0; i < length; i += 1) {
+            forward[i] = -1;
+            backward[i] = -1;
+        }
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean front = delta % 2 != 0;
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1off = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1off - 1] < forward[k1off + 1])) {
+                    x1 = forward[k1off + 1];
+                } else {
+                    x1 = forward[k1off - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1 += 1;
+                    y1 += 1;
+                }
+                forward[k1off] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2off = offset + delta - k1;
+                    if (k2off >= 0 && k2off < length && backward[k2off] != -1
+                        && x1 >= n - backward[k2off]) {
+                        return ((long) (aLo + x1) << 32) | (bLo + y1);
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2off = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && backward[k2off - 1] < backward[k2off + 1])) {
+                    x2 = backward[k2off + 1];
+                } else {
+                    x2 = backward[k2off - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2 += 1;
+                    y2 += 1;
+                }
+                backward[k2off] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1off = offset + delta - k2;
+                    if (k1off >= 0 && k1off < length && forward[k1off] != -1) {
+                        int x1 = forward[k1off];
+                        int y1 = offset + x1 - k1off;
+                        if (x1 >= n - x2) {
+                            return ((long) (aLo + x1) << 32) | (bLo + y1);
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** collect the marked lines into edits. */
+    private List<Edit> edits() {
+        List<Edit> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < deleted.length || j < inserted.length) {
+            if ((i < deleted.length && deleted[i]) || (j < inserted.length && inserted[j])) {
+                int i0 = i;
+                int j0 = j;
+                while (i < deleted.length && deleted[i]) {
+                    i += 1;
+                }
+                while (j < inserted.length && inserted[j]) {
+                    j += 1;
+                }
+                result.add(new Edit(i0, i, j0, j));
+            } else {
+                i += 1;
+                j += 1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Three-way merge of texts, line by line.
+ *
+ *  Both sides are diffed against the base.  Changes made by only one side
+ *  are taken as they are; changes of the two sides that overlap or touch in
+ *  the base are merged into one region, which is taken from either side if
+ *  both made the same change and otherwise becomes a conflict:
+ *
+ *      <<<<<<< HEAD
+ *      lines of the current side
+ *      =======
+ *      lines of the given side
+ *      >>>>>>>
+ */
+public class Diff3 {
+    /** The merged text. */
+    private final StringBuilder merged = new StringBuilder();
+
+    /** Whether any region conflicted. */
+    private boolean conflict;
+
+    /** A change of one side, tagged with the side it came from. */
+    private static class Change {
+        private final Diff.Edit edit;
+        private final boolean ours;
+
+        Change(Diff.Edit edit, boolean ours) {
+            this.edit = edit;
+            this.ours = ours;
+        }
+    }
+
+    /** merge the changes from BASE to OURS and from BASE to THEIRS. */
+    public Diff3(String base, String ours, String theirs) {
+        List<String> b = Diff.lines(base);
+        List<String> o = Diff.lines(ours);
+        List<String> t = Diff.lines(theirs);
+        List<Change> changes = new ArrayList<>();
+        List<Diff.Edit> ourEdits = Diff.diff(b, o);
+        List<Diff.Edit> theirEdits = Diff.diff(b, t);
+        int i = 0;
+        int j = 0;
+        while (i < ourEdits.size() || j < theirEdits.size()) {
+            if (j == theirEdits.size()
+                || (i < ourEdits.size() && ourEdits.get(i).aStart <= theirEdits.get(j).aStart)) {
+                changes.add(new Change(ourEdits.get(i), true));
+                i += 1;
+            } else {
+                changes.add(new Change(theirEdits.get(j), false));
+                j += 1;
+            }
+        }
+
+        int done = 0;
+        int k = 0;
+        while (k < changes.size()) {
+            int lo = changes.get(k).edit.aStart;
+            int hi = changes.get(k).edit.aEnd;
+            int first = k;
+            k += 1;
+            while (k < changes.size() && changes.get(k).edit.aStart <= hi) {
+                hi = Math.max(hi, changes.get(k).edit.aEnd);
+                k += 1;
+            }
+            append(b, done, lo);
+            region(o, t, changes.subList(first, k), lo, hi);
+            done = hi;
+        }
+        append(b, done, b.size());
+    }
+
+    /** get the merged text. */
+    public String getMerged() {
+        return merged.toString();
+    }
+
+    /** check if any region was changed differently by the two sides. */
+    public boolean hasConflict() {
+        return conflict;
+    }
+
+    /** add the region of base lines [LO, HI) changed by CHANGES. */
+    private void region(List<String> o, List<String> t, List<Change> changes,
+                        int lo, int hi) {
+        List<String> ours = side(o, changes, true, lo, hi);
+        List<String> theirs = side(t, changes, false, lo, hi);
+        if (ours == null) {
+            append(theirs);
+        } else if (theirs == null || ours.equals(theirs)) {
+            append(ours);
+        } else {
+            conflict = true;
+            merged.append("<<<<<<< HEAD\n");
+            append(ours);
+            merged.append("=======\n");
+            append(theirs);
+            merged.append(">>>>>>>\n");
+        }
+    }
+
+    /** get the lines of SIDE that replace base lines [LO, HI), or null if
+     *  that side (OURS or not) left them alone. */
+    private static List<String> side(List<String> side, List<Change> changes,
+                                     boolean ours, int lo, int hi) {
+        Diff.Edit first = null;
+        Diff.Edit last = null;
+        for (Change c : changes) {
+            if (c.ours == ours) {
+                if (first == null) {
+                    first = c.edit;
+                }
+                last = c.edit;
+            }
+        }
+        if (first == null) {
+            return null;
+        }
+        int start = first.bStart - (first.aStart - lo);
+        int end = last.bEnd + (hi - last.aEnd);
+        return side.subList(start, end);
+    }
+
+    /** add base lines [FROM, TO). */
+    private void append(List<String> b, int from, int to) {
+        append(b.subList(from, to));
+    }
+
+    /** add LINES. */
+    private void append(List<String> lines) {
+        for (String line : lines) {
+            merged.append(line);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import static gitlet.Utils.*;
+
+/** The fsck command: checks that the object store is intact.
+ *
+ *  Every commit and blob file is read and hashed again, on all cores, and
+ *  its SHA-1 compared with its name.  Commits must name existing parents
+ *  and blobs, and branches and the staging area must name existing
+ *  objects.  Files are decoded directly rather than through Cache, so
+ *  that what is checked is what is on disk.  With --progress, the progress
+ *  is shown on the standard error.
+ */
+public class Fsck {
+    /** For fsck [--progress]: check the objects, showing the PROGRESS if asked. */
+    public static void fsck(boolean progress) {
+        List<File> commitFiles = objectFiles(Commit.COMMITS_DIR);
+        List<File> blobFiles = objectFiles(Blob.BLOB_DIR);
+        Set<String> commits = names(commitFiles);
+        Set<String> blobs = names(blobFiles);
+        Set<String> problems = new ConcurrentSkipListSet<>();
+        int total = commitFiles.size() + blobFiles.size();
+        AtomicInteger done = new AtomicInteger();
+
+        long t = Stats.start();
+        commitFiles.parallelStream().forEach(f -> {
+            String id = f.getName();
+            try {
+                Commit c = readObject(f, Commit.class);
+                if (!id.equals(c.getID()) || !id.equals(c.computeID())) {
+                    problems.add("hash mismatch in commit " + id);
+                } else if (misplaced(f)) {
+                    problems.add("misplaced commit " + id);
+                }
+                for (String parent : Clone.parents(c)) {
+                    if (!commits.contains(parent)) {
+                        problems.add("missing parent " + parent + " of commit " + id);
+                    }
+                }
+                for (Map.Entry<String, String> e : c.getToBlobs().entrySet()) {
+                    if (!blobs.contains(e.getValue()) && !Clone.isPartial()) {
+                        problems.add("missing blob " + e.getValue() + " for "
+                                     + e.getKey() + " in commit " + id);
+                    }
+                }
+            } catch (RuntimeException excp) {
+                problems.add("corrupt commit " + id);
+            }
+            report(done.incrementAndGet(), total, progress);
+        });
+        blobFiles.parallelStream().forEach(f -> {
+            String id = f.getName();
+            try {
+                Blob b = readObject(f, Blob.class);
+                if (!id.equals(b.getID()) || !id.equals(sha1(b.getName(), b.getContents()))) {
+                    problems.add("hash mismatch in blob " + id);
+                } else if (misplaced(f)) {
+                    problems.add("misplaced blob " + id);
+                }
+            } catch (RuntimeException excp) {
+                problems.add("corrupt blob " + id);
+            }
+            report(done.incrementAndGet(), total, progress);
+        });
+        Stats.phase("objects", t);
+
+        for (String branch : Heads.branches()) {
+            String id = Heads.getBranchID(branch);
+            if (!commits.contains(id)) {
+                problems.add("branch " + branch + " points to missing commit " + id);
+            }
+        }
+        for (Map.Entry<String, String> e : Staging.getStage().getToBlobs().entrySet()) {
+            if (!blobs.contains(e.getValue())) {
+                problems.add("missing blob " + e.getValue() + " for staged " + e.getKey());
+            }
+        }
+
+        for (String problem : problems) {
+            System.out.println(problem);
+        }
+        message("Checked %d commits and %d blobs: %d problems.",
+                commitFiles.size(), blobFiles.size(), problems.size());
+    }
+
+    /** get the files in the subfolders of DIR. */
+    private static List<File> objectFiles(File dir) {
+        List<File> result = new ArrayList<>();
+        File[] folders = dir.listFiles(File::isDirectory);
+        if (folders == null) {
+            return result;
+        }
+        for (File folder : folders) {
+            for (String name : plainFilenamesIn(folder)) {
+                result.add(join(folder, name));
+            }
+        }
+        return result;
+    }
+
+    /** check if the object file F is outside the folder named by its id. */
+    private static boolean misplaced(File f) {
+        return !f.getName().startsWith(f.getParentFile().getName());
+    }
+
+    /** get the names of FILES. */
+    private static Set<String> names(List<File> files) {
+        Set<String> result = new TreeSet<>();
+        for (File f : files) {
+            result.add(f.getName());
+        }
+        return result;
+    }
+
+    /** show that DONE of TOTAL objects are checked, if PROGRESS. */
+    private static void report(int done, int total, boolean progress) {
+        if (progress && (done % 1000 == 0 || done == total)) {
+            System.err.printf("\rChecking objects: %d%% (%d/%d)%s",
+                              100L * done / total, done, total, done == total ? "\n" : "");
+        }
+    }
+}
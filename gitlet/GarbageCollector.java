@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import static gitlet.Utils.*;
+
+/** The gc command: deletes the commits and blobs that nothing refers to.
+ *
+ *  Marking starts from the head of every branch (remote copies included)
+ *  and from the blobs in the staging area.  The history is walked one
+ *  generation at a time, with the commits of a generation read in
+ *  parallel.  Sweeping then deletes every object file that was not marked
+ *  and is older than the grace period, so that an object written by a
+ *  command running meanwhile, e.g. the blob of an add that has not updated
+ *  the staging area yet, is kept.  HEAD, the staging area and every branch
+ *  are locked while gc runs, so no commit can point to an object after it
+ *  was found unreachable.  Temporary files left in .gitlet/tmp by writes
+ *  that never finished are deleted as well.  Finally the loose branches
+ *  are packed.
+ */
+public class GarbageCollector {
+    /** Default grace period: two weeks, in milliseconds. */
+    static final long DEFAULT_GRACE = 14L * 24 * 60 * 60 * 1000;
+
+    /** Least age of a temporary file deleted, so that one still being
+     *  written is kept: an hour, in milliseconds. */
+    static final long TMP_GRACE = 60L * 60 * 1000;
+
+    /** For gc [--prune=now|N(s|m|h|d)]. */
+    public static void gc(String prune) {
+        long grace = prune == null ? DEFAULT_GRACE : parseGrace(prune);
+        // hold off commands that add objects and then point to them.
+        Locks.head(true);
+        Locks.staging();
+        List<String> branches = Heads.branches();
+        for (String branch : branches) {
+            Locks.ref(branch);
+        }
+        long t = Stats.start();
+        Set<String> commits = ConcurrentHashMap.newKeySet();
+        Set<String> blobs = ConcurrentHashMap.newKeySet();
+        blobs.addAll(Staging.getStage().getToBlobs().values());
+        List<String> fringe = new ArrayList<>();
+        for (String branch : branches) {
+            fringe.add(Heads.getBranchID(branch));
+        }
+        while (!fringe.isEmpty()) {
+            fringe = fringe.parallelStream()
+                .filter(commits::add)
+                .flatMap(id -> {
+                    Commit c = Commit.getCommit(id);
+                    blobs.addAll(c.getToBlobs().values());
+                    return Clone.parents(c).stream();
+                })
+                .filter(id -> !commits.contains(id))
+                .distinct()
+                .collect(Collectors.toList());
+        }
+        Stats.phase("mark", t);
+
+        t = Stats.start();
+        long cutoff = System.currentTimeMillis() - grace;
+        long[] swept = new long[2];
+        sweep(Commit.COMMITS_DIR, commits, cutoff, swept);
+        sweep(Blob.BLOB_DIR, blobs, cutoff, swept);
+        sweep(Blob.DATA_DIR, blobs, cutoff, swept);
+        sweepTmp(Math.min(cutoff, System.currentTimeMillis() - TMP_GRACE), swept);
+        Stats.phase("sweep", t);
+        Heads.pack();
+        message("Removed %d objects, reclaimed %d bytes.", swept[0], swept[1]);
+    }
+
+    /** delete the files under DIR not named in LIVE and last modified
+     *  before CUTOFF, adding their number and size to SWEPT. */
+    private static void sweep(File dir, Set<String> live, long cutoff, long[] swept) {
+        File[] folders = dir.listFiles(File::isDirectory);
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            for (String name : plainFilenamesIn(folder)) {
+                File f = join(folder, name);
+                if (!live.contains(name) && f.lastModified() < cutoff) {
+                    long size = f.length();
+                    if (f.delete()) {
+                        swept[0] += 1;
+                        swept[1] += size;
+                    }
+                }
+            }
+            // an empty folder would break the lookup of abbreviated ids.
+            folder.delete();
+        }
+    }
+
+    /** delete the temporary files left behind by writes that never
+     *  finished, last modified before CUTOFF, adding them to SWEPT. */
+    private static void sweepTmp(long cutoff, long[] swept) {
+        List<String> names = plainFilenamesIn(Cache.TMP_DIR);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            File f = join(Cache.TMP_DIR, name);
+            long size = f.length();
+            if (f.lastModified() < cutoff && f.delete()) {
+                swept[0] += 1;
+                swept[1] += size;
+            }
+        }
+    }
+
+    /** get the grace period in milliseconds described by PRUNE. */
+    private static long parseGrace(String prune) {
+        if (prune.equals("now")) {
+            return 0;
+        }
+        long unit;
+        switch (prune.isEmpty() ? ' ' : prune.charAt(prune.length() - 1)) {
+            case 's':
+                unit = 1000L;
+                break;
+            case 'm':
+                unit = 60 * 1000L;
+                break;
+            case 'h':
+                unit = 60 * 60 * 1000L;
+                break;
+            case 'd':
+                unit = 24 * 60 * 60 * 1000L;
+                break;
+            default:
+                throw error("Incorrect operands");
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(prune.substring(0, prune.length() - 1));
+        } catch (NumberFormatException excp) {
+            throw error("Incorrect operands");
+        }
+        if (amount < 0 || amount > Long.MAX_VALUE / unit) {
+            throw error("Incorrect operands");
+        }
+        return amount * unit;
+    }
+}
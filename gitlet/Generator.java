@@ -0,0 +1,319 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import static gitlet.Utils.*;
+
+/** Writes a synthetic repository straight into .gitlet, for scale testing
+ *  and benchmarks.  Usage, from an empty directory:
+ *
+ *      java gitlet.Generator [--files=N] [--commits=N] [--changes=N]
+ *          [--shape=linear|branches|criss-cross] [--branches=N]
+ *          [--sizes=fixed:BYTES|uniform:MIN:MAX|lognormal:MEDIAN:SIGMA]
+ *          [--seed=N] [--no-checkout]
+ *
+ *  The first commit adds all the files, and each later commit rewrites
+ *  CHANGES of them.  With the "branches" shape, commits are spread over
+ *  master and branches b0, b1, ... forked from random points of the
+ *  history; with "criss-cross", master and b0 repeatedly merge each other's
+ *  previous heads.  Unless --no-checkout is given, the head of master is
+ *  written to the working directory at the end.
+ *
+ *  Commits and blobs are built with the Commit and Blob classes and saved
+ *  as the commands would save them, but without the staging area, so the
+ *  cost is one object write per new blob and per commit.  Every commit
+ *  stores its whole file map, so the size of the history grows with
+ *  files times commits.
+ */
+public class Generator {
+    /** How to run the generator. */
+    static final String USAGE = "Usage: java gitlet.Generator [--files=N] [--commits=N]"
+        + " [--changes=N] [--shape=linear|branches|criss-cross] [--branches=N]"
+        + " [--sizes=fixed:BYTES|uniform:MIN:MAX|lognormal:MEDIAN:SIGMA]"
+        + " [--seed=N] [--no-checkout]";
+
+    /** Number of files added by the first commit. */
+    int files = 100;
+    /** Number of commits after the first. */
+    int commits = 100;
+    /** Number of files rewritten by each commit. */
+    int changes = 1;
+    /** "linear", "branches" or "criss-cross". */
+    String shape = "linear";
+    /** Number of branches besides master for the "branches" shape. */
+    int branches = 4;
+    /** Distribution of file sizes, see size(). */
+    String sizes = "fixed:1024";
+    /** Whether to write the head of master to the working directory. */
+    boolean checkout = true;
+    /** Seed of all the random choices. */
+    long seed = 42;
+
+    /** Source of all the random choices. */
+    private Random random;
+    /** Timestamp of the next commit; commits are one minute apart. */
+    private long time = 1600000000000L;
+    /** The head commit of each branch. */
+    private final Map<String, Commit> heads = new TreeMap<>();
+
+    public static void main(String... args) {
+        Generator g = new Generator();
+        try {
+            for (String arg : args) {
+                String[] kv = arg.split("=", 2);
+                String value = kv.length > 1 ? kv[1] : null;
+                switch (kv[0]) {
+                    case "--files":
+                        g.files = count(kv[0], value);
+                        break;
+                    case "--commits":
+                        g.commits = count(kv[0], value);
+                        break;
+                    case "--changes":
+                        g.changes = count(kv[0], value);
+                        break;
+                    case "--shape":
+                        g.shape = option(kv[0], value);
+                        break;
+                    case "--branches":
+                        g.branches = count(kv[0], value);
+                        break;
+                    case "--sizes":
+                        g.sizes = option(kv[0], value);
+                        break;
+                    case "--seed":
+                        try {
+                            g.seed = Long.parseLong(option(kv[0], value));
+                        } catch (NumberFormatException excp) {
+                            throw error("Invalid value for --seed: %s\n%s", value, USAGE);
+                        }
+                        break;
+                    case "--no-checkout":
+                        g.checkout = false;
+                        break;
+                    default:
+                        throw error("Unknown option: %s\n%s", arg, USAGE);
+                }
+            }
+            g.generate();
+        } catch (GitletException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /** get VALUE, the value given to OPTION, which must not be missing. */
+    private static String option(String option, String value) {
+        if (value == null || value.isEmpty()) {
+            throw error("Missing value for %s\n%s", option, USAGE);
+        }
+        return value;
+    }
+
+    /** get the count VALUE given to OPTION, which must be a number >= 0. */
+    private static int count(String option, String value) {
+        int n;
+        try {
+            n = Integer.parseInt(option(option, value));
+        } catch (NumberFormatException excp) {
+            n = -1;
+        }
+        if (n < 0) {
+            throw error("Invalid value for %s: %s\n%s", option, value, USAGE);
+        }
+        return n;
+    }
+
+    /** Create the repository in the current directory. */
+    public void generate() {
+        if (Repository.GITLET_DIR.exists()) {
+            throw error("A Gitlet version-control system already exists in the current directory.");
+        }
+        random = new Random(seed);
+        Repository.setup();
+        heads.put("master", Heads.getCurrent());
+
+        Map<String, String> all = new TreeMap<>();
+        for (int i = 0; i < files; i += 1) {
+            all.put(fileName(i), newBlob(fileName(i)));
+        }
+        commit("master", "Add " + files + " files", all, List.of());
+
+        switch (shape) {
+            case "linear":
+                for (int c = 0; c < commits; c += 1) {
+                    change("master", "Commit " + c);
+                }
+                break;
+            case "branches":
+                branches();
+                break;
+            case "criss-cross":
+                crissCross();
+                break;
+            default:
+                throw error("Unknown shape: %s", shape);
+        }
+
+        for (Map.Entry<String, Commit> e : heads.entrySet()) {
+            Heads.setBranchID(e.getKey(), e.getValue().getID());
+        }
+        if (checkout) {
+            for (Map.Entry<String, String> e : heads.get("master").getToBlobs().entrySet()) {
+                Blob.checkout(e.getValue(), join(Repository.CWD, e.getKey()));
+            }
+        }
+    }
+
+    /** Spread the commits over master and the branches, forking branch
+     *  number k once k / (branches + 1) of the commits are written. */
+    private void branches() {
+        List<String> names = new ArrayList<>(List.of("master"));
+        for (int c = 0; c < commits; c += 1) {
+            if (names.size() <= branches
+                && c >= (long) commits * names.size() / (branches + 1)) {
+                String from = names.get(random.nextInt(names.size()));
+                String branch = "b" + (names.size() - 1);
+                heads.put(branch, heads.get(from));
+                names.add(branch);
+            }
+            change(names.get(random.nextInt(names.size())), "Commit " + c);
+        }
+        while (names.size() <= branches) {
+            String branch = "b" + (names.size() - 1);
+            heads.put(branch, heads.get("master"));
+            names.add(branch);
+        }
+    }
+
+    /** Alternate commits on master and b0 with merges of each branch into
+     *  the other, each merge taking the other's head from before the
+     *  previous round, so that later merges have two split points. */
+    private void crissCross() {
+        heads.put("b0", heads.get("master"));
+        Set<String> touchedMaster = new HashSet<>();
+        Set<String> touchedOther = new HashSet<>();
+        for (int c = 0; c < commits; c += 4) {
+            touchedMaster.addAll(change("master", "Commit " + c));
+            touchedOther.addAll(change("b0", "Commit " + (c + 1)));
+            Commit master = heads.get("master");
+            Commit other = heads.get("b0");
+            merge("master", other, touchedOther, "Merged b0 into master.");
+            merge("b0", master, touchedMaster, "Merged master into b0.");
+            touchedMaster.clear();
+            touchedOther.clear();
+        }
+    }
+
+    /** Commit on BRANCH a merge of GIVEN, taking GIVEN's version of the
+     *  files in TOUCHED and of the files BRANCH does not have. */
+    private void merge(String branch, Commit given, Set<String> touched, String message) {
+        Map<String, String> blobs = new TreeMap<>(heads.get(branch).getToBlobs());
+        for (Map.Entry<String, String> e : given.getToBlobs().entrySet()) {
+            if (touched.contains(e.getKey()) || !blobs.containsKey(e.getKey())) {
+                blobs.put(e.getKey(), e.getValue());
+            }
+        }
+        commit(branch, message, blobs, List.of(given.getID()));
+    }
+
+    /** Commit on BRANCH new contents for CHANGES random files.  Returns
+     *  the names of the changed files. */
+    private Set<String> change(String branch, String message) {
+        Map<String, String> blobs = new TreeMap<>(heads.get(branch).getToBlobs());
+        Set<String> changed = new HashSet<>();
+        for (int k = 0; k < changes; k += 1) {
+            String name = fileName(random.nextInt(files));
+            blobs.put(name, newBlob(name));
+            changed.add(name);
+        }
+        commit(branch, message, blobs, List.of());
+        return changed;
+    }
+
+    /** Save a commit of BLOBS on top of BRANCH, with OTHERPARENTS as
+     *  further parents, and advance BRANCH to it. */
+    private void commit(String branch, String message, Map<String, String> blobs,
+                        List<String> otherParents) {
+        List<String> parents = new ArrayList<>();
+        parents.add(heads.get(branch).getID());
+        parents.addAll(otherParents);
+        Commit c = new Commit(message, new Date(time), parents, blobs);
+        time += 60000;
+        c.saveCommit();
+        Map<String, String> before = heads.get(branch).getToBlobs();
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> e : blobs.entrySet()) {
+            if (!e.getValue().equals(before.get(e.getKey()))) {
+                changed.add(e.getKey());
+            }
+        }
+        for (String name : before.keySet()) {
+            if (!blobs.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+        ChangedPaths.record(c, changed);
+        heads.put(branch, c);
+    }
+
+    /** Save a blob of random contents for NAME and return its ID. */
+    private String newBlob(String name) {
+        Blob b = new Blob(name, contents(size()));
+        b.saveBlob();
+        return b.getID();
+    }
+
+    /** Draw a file size from the distribution in SIZES. */
+    private int size() {
+        String[] spec = sizes.split(":");
+        try {
+            switch (spec[0]) {
+                case "fixed":
+                    return Integer.parseInt(spec[1]);
+                case "uniform":
+                    int min = Integer.parseInt(spec[1]);
+                    int max = Integer.parseInt(spec[2]);
+                    return min + random.nextInt(max - min + 1);
+                case "lognormal":
+                    double median = Double.parseDouble(spec[1]);
+                    double sigma = Double.parseDouble(spec[2]);
+                    return (int) Math.min(Integer.MAX_VALUE / 2,
+                                          median * Math.exp(sigma * random.nextGaussian()));
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            // reported below
+        }
+        throw error("Bad size distribution: %s", sizes);
+    }
+
+    /** The name of file number I. */
+    static String fileName(int i) {
+        return String.format("f%06d.txt", i);
+    }
+
+    /** SIZE bytes of random lines of text. */
+    String contents(int size) {
+        return contents(random, size);
+    }
+
+    /** SIZE bytes of random lines of text, drawn from RANDOM. */
+    static String contents(Random random, int size) {
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            if (sb.length() % 64 == 63) {
+                sb.append('\n');
+            } else {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return sb.toString();
+    }
+}
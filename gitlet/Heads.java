@@ -1,9 +1,24 @@
 package gitlet;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import static gitlet.Utils.*;
 
-/** a class represents a file which contains the current commit in different branches. */
+/** a class represents a file which contains the current commit in different branches.
+ *
+ *  A branch is either a loose file under refs or a line "ID NAME" of the
+ *  file packed-refs, which holds many branches sorted by name in one file;
+ *  a loose file overrides the packed line.  Branches are written loose and
+ *  moved into packed-refs by pack-refs (and gc).  The current commit ID is
+ *  remembered until HEAD or a branch changes; the daemon forgets it before
+ *  each command.
+ */
 public class Heads {
     /** Create Heads folder to store different branch.
      *  Each branch name represents its current commit.
@@ -13,12 +28,25 @@ public class Heads {
     /** Creates Head file stores the current branch. */
     private static final File HEAD = join(".gitlet", "head");
 
+    /** The file of the packed branches. */
+    static final File PACKED = join(".gitlet", "packed-refs");
+
+    /** The current commit ID, or null if it has to be looked up again. */
+    private static volatile String currentID;
+
+    /** The contents of PACKED that PACKED_REFS was parsed from. */
+    private static String packedContents;
+
+    /** The packed branches, keyed by name. */
+    private static Map<String, String> packedRefs = new TreeMap<>();
+
     /** When a new commit happens, heads should be modified:
      *  1. write the commit ID into the head
      *  2. write the commit ID into the ref folder named by current branch
      */
     public static void changeBranch(String branch) {
-        writeContents(HEAD, branch);
+        Cache.putString(HEAD, branch);
+        currentID = null;
     }
 
     /** get the current commit. */
@@ -29,17 +57,175 @@ public class Heads {
 
     /** get the current commit ID. */
     public static String getCurrentID() {
-        return getBranchID(currentBranch());
+        String id = currentID;
+        if (id == null) {
+            id = getBranchID(currentBranch());
+            currentID = id;
+        }
+        return id;
+    }
+
+    /** forget the current commit ID, e.g. because another process may
+     *  have moved the branch. */
+    public static void forget() {
+        currentID = null;
     }
 
     /** get the branch commit ID. */
     public static String getBranchID(String branch) {
-        File f = join(DEFAULTBRANCH_DIR, branch);
-        return readContentsAsString(f);
+        File loose = join(DEFAULTBRANCH_DIR, branch);
+        if (Cache.exists(loose)) {
+            return Cache.getString(loose);
+        }
+        String id = packed().get(branch);
+        if (id == null) {
+            throw new IllegalArgumentException("no branch " + branch);
+        }
+        return id;
+    }
+
+    /** point the branch at the given commit ID. */
+    public static void setBranchID(String branch, String commitID) {
+        Cache.putString(join(DEFAULTBRANCH_DIR, branch), commitID);
+        currentID = null;
+    }
+
+    /** check if the branch exists. */
+    public static boolean exists(String branch) {
+        return Cache.exists(join(DEFAULTBRANCH_DIR, branch)) || packed().containsKey(branch);
+    }
+
+    /** delete the branch. */
+    public static void removeBranch(String branch) {
+        if (packed().containsKey(branch)) {
+            Locks.packedRefs();
+            Map<String, String> refs = new TreeMap<>(packed());
+            refs.remove(branch);
+            Cache.putString(PACKED, format(refs));
+        }
+        File loose = join(DEFAULTBRANCH_DIR, branch);
+        if (Cache.exists(loose)) {
+            Cache.delete(loose);
+        }
+        currentID = null;
+    }
+
+    /** get all the branch names in lexicographic order, including the
+     *  REMOTE/BRANCH copies of remote branches kept in subfolders. */
+    public static List<String> branches() {
+        Set<String> result = new TreeSet<>(looseBranches());
+        result.addAll(packed().keySet());
+        return new ArrayList<>(result);
+    }
+
+    /** For pack-refs: move every loose branch into packed-refs.  A loose
+     *  file is deleted only if it still holds the packed ID and its lock
+     *  is free; otherwise it stays and overrides the packed line. */
+    public static void pack() {
+        Locks.packedRefs();
+        List<String> loose = looseBranches();
+        if (loose.isEmpty()) {
+            return;
+        }
+        Map<String, String> refs = new TreeMap<>(packed());
+        for (String branch : loose) {
+            refs.put(branch, getBranchID(branch));
+        }
+        // the packed file is complete before any loose file goes away.
+        Cache.putString(PACKED, format(refs));
+        for (String branch : loose) {
+            File f = join(DEFAULTBRANCH_DIR, branch);
+            String id = refs.get(branch);
+            Locks.withRef(branch, () -> {
+                if (Cache.exists(f) && Cache.getString(f).equals(id)) {
+                    Cache.delete(f);
+                }
+            });
+        }
+    }
+
+    /** get the names of the loose branches, sorted. */
+    private static List<String> looseBranches() {
+        List<String> result = new ArrayList<>(Cache.list(DEFAULTBRANCH_DIR));
+        File[] dirs = DEFAULTBRANCH_DIR.listFiles(File::isDirectory);
+        if (dirs != null) {
+            for (File dir : dirs) {
+                for (String branch : Cache.list(dir)) {
+                    result.add(dir.getName() + "/" + branch);
+                }
+            }
+            Collections.sort(result);
+        }
+        return result;
+    }
+
+    /** get the packed branches, keyed by name. */
+    private static synchronized Map<String, String> packed() {
+        if (!Cache.exists(PACKED)) {
+            return Collections.emptyMap();
+        }
+        String contents = Cache.getString(PACKED);
+        if (contents != packedContents) {
+            packedRefs = parse(contents);
+            packedContents = contents;
+        }
+        return packedRefs;
+    }
+
+    /** get the commit ID of the branch BRANCH in the .gitlet directory DIR
+     *  of another repository, or null if there is no such branch. */
+    public static String branchID(File dir, String branch) {
+        File loose = join(dir, "refs", branch);
+        if (loose.isFile()) {
+            return readContentsAsString(loose);
+        }
+        File packed = join(dir, PACKED.getName());
+        if (!packed.isFile()) {
+            return null;
+        }
+        return parse(readContentsAsString(packed)).get(branch);
+    }
+
+    /** get the names of the branches, loose or packed, of the .gitlet
+     *  directory DIR of another repository, leaving out its copies of
+     *  remote branches. */
+    public static List<String> branches(File dir) {
+        List<String> result = new ArrayList<>(plainFilenamesIn(join(dir, "refs")));
+        File packed = join(dir, PACKED.getName());
+        if (packed.isFile()) {
+            for (String branch : parse(readContentsAsString(packed)).keySet()) {
+                if (!branch.contains("/") && !result.contains(branch)) {
+                    result.add(branch);
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** get the branches in CONTENTS, the contents of a packed-refs file. */
+    private static Map<String, String> parse(String contents) {
+        Map<String, String> result = new TreeMap<>();
+        for (String line : contents.split("\n")) {
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                result.put(line.substring(space + 1), line.substring(0, space));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** get the contents of a packed-refs file holding REFS, sorted by name. */
+    private static String format(Map<String, String> refs) {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, String> e : refs.entrySet()) {
+            result.append(e.getValue()).append(' ').append(e.getKey()).append('\n');
+        }
+        return result.toString();
     }
 
     /** get the current branch. */
     public static String currentBranch() {
-        return readContentsAsString(HEAD);
+        return Cache.getString(HEAD);
     }
 }
@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static gitlet.Utils.*;
+
+/** Locks that let several processes change one repository at a time.
+ *
+ *  Each lock is a FileChannel.lock on a file under .gitlet/locks: head,
+ *  staging, packed-refs and refs/BRANCH for each branch.  A command takes
+ *  the locks of what it changes, in that order to avoid deadlocks, before
+ *  it reads them, and holds them until it ends; a batch holds them until
+ *  its writes are flushed.  Commands that only read (log, status, diff,
+ *  ...) take none: mutable files are replaced by renaming (see Cache), so
+ *  readers see either the old or the new version.  Objects are named by
+ *  their contents, so writing one needs no lock either.
+ *
+ *  A lock is never taken while one later in the order is held, nor turned
+ *  from shared to exclusive in place: deferred writes are flushed, every
+ *  lock is released, and they are all taken again in order.  This happens
+ *  e.g. when a command in a batch needs HEAD after the commands before it
+ *  locked the staging area and refs.
+ *
+ *  Once a lock is taken, Cache and Heads drop what they remember, since
+ *  another process may have changed the file before.
+ */
+public class Locks {
+    /** Folder of the lock files. */
+    static final File LOCKS_DIR = join(".gitlet", "locks");
+
+    /** Places of the locks in the order they are taken. */
+    private static final int HEAD = 0, STAGING = 1, REFS = 2, PACKED_REFS = 3;
+
+    /** The locks held by this process, keyed by lock file. */
+    private static final Map<File, FileLock> HELD = new LinkedHashMap<>();
+
+    /** The place in the order of each lock in HELD. */
+    private static final Map<File, Integer> RANKS = new HashMap<>();
+
+    /** lock HEAD, SHARED if it is only read. */
+    public static void head(boolean shared) {
+        lock(join(LOCKS_DIR, "head"), shared, HEAD);
+    }
+
+    /** lock the staging area. */
+    public static void staging() {
+        lock(join(LOCKS_DIR, "staging"), false, STAGING);
+    }
+
+    /** lock the branch BRANCH. */
+    public static void ref(String branch) {
+        lock(join(LOCKS_DIR, "refs", branch), false, REFS);
+    }
+
+    /** lock the packed branches. */
+    public static void packedRefs() {
+        lock(join(LOCKS_DIR, "packed-refs"), false, PACKED_REFS);
+    }
+
+    /** lock the branch BRANCH of the repository in the .gitlet directory DIR. */
+    public static void ref(File dir, String branch) {
+        lock(join(dir, "locks", "refs", branch), false, REFS);
+    }
+
+    /** run ACTION holding the lock of the branch BRANCH, if it can be had
+     *  without waiting, and return whether ACTION ran. */
+    public static synchronized boolean withRef(String branch, Runnable action) {
+        File file = join(LOCKS_DIR, "refs", branch);
+        FileLock held = HELD.get(file);
+        if (held != null && !held.isShared()) {
+            action.run();
+            return true;
+        }
+        file.getParentFile().mkdirs();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.tryLock() == null) {
+                return false;
+            }
+            Cache.revalidate();
+            action.run();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** take the lock on FILE, SHARED or exclusive, waiting for it.  RANK is
+     *  its place in the order. */
+    private static synchronized void lock(File file, boolean shared, int rank) {
+        FileLock held = HELD.get(file);
+        if (held != null && (shared || !held.isShared())) {
+            return;
+        }
+        boolean inOrder = held == null;
+        for (int r : RANKS.values()) {
+            inOrder &= r <= rank;
+        }
+        if (inOrder) {
+            acquire(file, shared, rank);
+        } else {
+            // take everything again in order, FILE exclusive if wanted.
+            Map<File, Boolean> wanted = new LinkedHashMap<>();
+            Map<File, Integer> ranks = new HashMap<>(RANKS);
+            for (Map.Entry<File, FileLock> e : HELD.entrySet()) {
+                wanted.put(e.getKey(), e.getValue().isShared());
+            }
+            wanted.put(file, shared);
+            ranks.put(file, rank);
+            if (Cache.deferring()) {
+                Cache.flush();
+            }
+            releaseAll();
+            List<File> files = new ArrayList<>(wanted.keySet());
+            files.sort(Comparator.comparing(ranks::get));
+            for (File f : files) {
+                acquire(f, wanted.get(f), ranks.get(f));
+            }
+        }
+        Cache.revalidate();
+        Heads.forget();
+    }
+
+    /** take the lock on FILE, which is not held, SHARED or exclusive,
+     *  waiting for it, at place RANK in the order. */
+    private static void acquire(File file, boolean shared, int rank) {
+        try {
+            file.getParentFile().mkdirs();
+            long t = Stats.start();
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                HELD.put(file, channel.lock(0, Long.MAX_VALUE, shared));
+            } catch (IOException | RuntimeException excp) {
+                channel.close();
+                throw excp;
+            }
+            RANKS.put(file, rank);
+            Stats.phase("lock", t);
+        } catch (IOException excp) {
+            throw error("Cannot lock %s: %s", file.getName(), excp.getMessage());
+        }
+    }
+
+    /** release every lock held, unless writes are still deferred. */
+    public static synchronized void release() {
+        if (Cache.deferring()) {
+            return;
+        }
+        releaseAll();
+    }
+
+    /** release every lock held. */
+    public static synchronized void releaseAll() {
+        for (FileLock lock : HELD.values()) {
+            try {
+                lock.channel().close();
+            } catch (IOException excp) {
+                // closing the channel releases the lock in any case.
+            }
+        }
+        HELD.clear();
+        RANKS.clear();
+    }
+}
@@ -1,5 +1,6 @@
 package gitlet;
 
+import java.util.Arrays;
 import static gitlet.Utils.*;
 
 /** Driver class for Gitlet, a subset of the Git version-control system.
@@ -11,10 +12,28 @@ public class Main {
      *  <COMMAND> <OPERAND1> <OPERAND2> ... 
      */
     public static void main(String[] args) {
-        // TODO: what if args is empty?
+        if (args.length > 0 && args[0].equals("--stats")) {
+            Stats.request();
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Stats.begin(args);
+        try {
+            run(args);
+        } catch (GitletException e) {
+            message(e.getMessage());
+        } finally {
+            Locks.release();
+            Stats.end();
+        }
+    }
+
+    /** Execute the command in ARGS.  Errors are reported by throwing a
+     *  GitletException whose message is the text to print, so that callers
+     *  running several commands in one JVM (see Daemon) can carry on.
+     */
+    public static void run(String[] args) {
         if (args.length == 0) {
-            message("Please enter a command.");
-            return;
+            throw error("Please enter a command.");
         }
 
         String firstArg = args[0];
@@ -35,7 +54,7 @@ public class Main {
                 validateRepository();
                 String message = args[1];
                 if (message.equals("")) {
-                    message("Please enter a commit message.");
+                    throw error("Please enter a commit message.");
                 }
                 Repository.makeCommit(message, "");
                 break;
@@ -45,9 +64,14 @@ public class Main {
                 Repository.makeRemove(args[1]);
                 break;
             case "log":
-                validateNumArgs("log", args, 1);
                 validateRepository();
-                Repository.makeLog();
+                if (args.length == 1) {
+                    Repository.makeLog();
+                } else if (args.length == 3 && args[1].equals("--")) {
+                    Repository.makeLog(args[2]);
+                } else {
+                    throw error("Incorrect operands");
+                }
                 break;
             case "global-log":
                 validateNumArgs("global-log", args, 1);
@@ -70,19 +94,16 @@ public class Main {
                     Repository.checkoutBranch(args[1]);
                 } else if (args.length == 3) {
                     if (!args[1].equals("--")) {
-                        message("Incorrect operands");
-                        System.exit(0);
+                        throw error("Incorrect operands");
                     }
                     Repository.checkoutFile(args[2]);
                 } else if (args.length == 4) {
                     if (!args[2].equals("--")) {
-                        message("Incorrect operands");
-                        System.exit(0);
+                        throw error("Incorrect operands");
                     }
                     Repository.checkoutCommit(args[1], args[3]);
                 } else {
-                    message("Incorrect operands");
-                    System.exit(0);
+                    throw error("Incorrect operands");
                 }
                 break;
             case "branch":
@@ -105,25 +126,147 @@ public class Main {
                 validateRepository();
                 Repository.merge(args[1]);
                 break;
+            case "diff":
+                validateRepository();
+                if (args.length > 3) {
+                    throw error("Incorrect operands");
+                }
+                Repository.makeDiff(Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "blame":
+                validateNumArgs("blame", args, 2);
+                validateRepository();
+                Blame.blame(args[1]);
+                break;
+            case "sparse-checkout":
+                validateRepository();
+                if (args.length >= 3 && args[1].equals("set")) {
+                    Sparse.set(Arrays.asList(args).subList(2, args.length));
+                } else if (args.length == 2 && args[1].equals("list")) {
+                    Sparse.list();
+                } else if (args.length == 2 && args[1].equals("disable")) {
+                    Sparse.disable();
+                } else {
+                    throw error("Incorrect operands");
+                }
+                break;
+            case "clone":
+                if (args.length < 2) {
+                    throw error("Incorrect operands");
+                }
+                int depth = 0;
+                long limit = -1;
+                for (int i = 2; i < args.length; i += 1) {
+                    if (args[i].equals("--depth") && i + 1 < args.length) {
+                        try {
+                            depth = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException excp) {
+                            throw error("Incorrect operands");
+                        }
+                        if (depth <= 0) {
+                            throw error("Incorrect operands");
+                        }
+                    } else if (args[i].startsWith("--filter=blob:limit=")) {
+                        limit = parseSize(args[i].substring("--filter=blob:limit=".length()));
+                    } else {
+                        throw error("Incorrect operands");
+                    }
+                }
+                Clone.clone(args[1], depth, limit);
+                break;
+            case "add-remote":
+                validateNumArgs("add-remote", args, 3);
+                validateRepository();
+                Remote.addRemote(args[1], args[2]);
+                break;
+            case "rm-remote":
+                validateNumArgs("rm-remote", args, 2);
+                validateRepository();
+                Remote.removeRemote(args[1]);
+                break;
+            case "fetch":
+                validateNumArgs("fetch", args, 3);
+                validateRepository();
+                Remote.fetch(args[1], args[2]);
+                break;
+            case "push":
+                validateNumArgs("push", args, 3);
+                validateRepository();
+                Remote.push(args[1], args[2]);
+                break;
+            case "pull":
+                validateNumArgs("pull", args, 3);
+                validateRepository();
+                Remote.pull(args[1], args[2]);
+                break;
+            case "fsck":
+                if (args.length > 2 || args.length == 2 && !args[1].equals("--progress")) {
+                    throw error("Incorrect operands");
+                }
+                validateRepository();
+                Fsck.fsck(args.length == 2);
+                break;
+            case "pack-refs":
+                validateNumArgs("pack-refs", args, 1);
+                validateRepository();
+                Heads.pack();
+                break;
+            case "gc":
+                validateRepository();
+                if (args.length == 1) {
+                    GarbageCollector.gc(null);
+                } else if (args.length == 2 && args[1].startsWith("--prune=")) {
+                    GarbageCollector.gc(args[1].substring("--prune=".length()));
+                } else {
+                    throw error("Incorrect operands");
+                }
+                break;
+            case "batch":
+                validateNumArgs("batch", args, 1);
+                validateRepository();
+                Batch.run(System.in);
+                break;
+            case "daemon":
+                validateRepository();
+                if (args.length == 1) {
+                    Daemon.serve();
+                } else if (args.length == 2 && args[1].equals("stop")) {
+                    Daemon.stop();
+                } else {
+                    throw error("Incorrect operands");
+                }
+                break;
             default:
-                message("No command with that name exists.");
-                System.exit(0);
+                throw error("No command with that name exists.");
+        }
+    }
+
+    /** get the number SIZE, which may end in k, m or g for a power of 1024. */
+    private static long parseSize(String size) {
+        long unit = 1;
+        String digits = size;
+        if (size.matches("\\d+[kKmMgG]")) {
+            unit = 1L << (10 * ("kmg".indexOf(Character.toLowerCase(size.charAt(size.length() - 1))) + 1));
+            digits = size.substring(0, size.length() - 1);
+        }
+        try {
+            return Long.parseLong(digits) * unit;
+        } catch (NumberFormatException excp) {
+            throw error("Incorrect operands");
         }
     }
 
     /** check for the number of args. */
     public static void validateNumArgs (String cmd, String[] args, int n) {
         if (args.length != n) {
-            message("Incorrect operands", cmd);
-            System.exit(0);
+            throw error("Incorrect operands");
         }
     }
 
     /** check if the user is in an initialized Gitlet working directory. */
     public static void validateRepository() {
         if (!Repository.GITLET_DIR.exists()) {
-            message("Not in an initialized Gitlet directory.");
-            System.exit(0);
+            throw error("Not in an initialized Gitlet directory.");
         }
     }
 }
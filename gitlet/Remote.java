@@ -0,0 +1,189 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import static gitlet.Utils.*;
+
+/** Remotes: other .gitlet directories on the local file system.
+ *
+ *  Each remote is a file .gitlet/remotes/NAME holding the path of the
+ *  remote .gitlet directory.  Objects are moved with a have/want walk: the
+ *  sending side starts from the commit the receiver wants and walks its
+ *  parents, stopping at every commit the receiver already has, since a
+ *  repository that has a commit has its whole history and all its blobs.
+ *  Only the commits found and the blobs they name that the receiver lacks
+ *  are copied, as the serialized files they are, with
+ *  FileChannel.transferTo so the bytes need not pass through the JVM.
+ *  The raw contents of large blobs (see Blob) go along with them.
+ */
+public class Remote {
+    /** Folder of the remotes. */
+    public static final File REMOTES_DIR = join(".gitlet", "remotes");
+
+    /** For add-remote. */
+    public static void addRemote(String name, String path) {
+        File f = join(REMOTES_DIR, name);
+        if (Cache.exists(f)) {
+            throw error("A remote with that name already exists.");
+        }
+        REMOTES_DIR.mkdir();
+        Cache.putString(f, path.replace("/", File.separator));
+    }
+
+    /** For rm-remote. */
+    public static void removeRemote(String name) {
+        File f = join(REMOTES_DIR, name);
+        if (!Cache.exists(f)) {
+            throw error("A remote with that name does not exist.");
+        }
+        Cache.delete(f);
+    }
+
+    /** For fetch: copy the branch BRANCH of the remote NAME into the
+     *  local branch NAME/BRANCH. */
+    public static void fetch(String name, String branch) {
+        File remote = remoteDir(name);
+        Locks.ref(name + "/" + branch);
+        String head = Heads.branchID(remote, branch);
+        if (head == null) {
+            throw error("That remote does not have that branch.");
+        }
+        long t = Stats.start();
+        copyHistory(head, remote, Repository.GITLET_DIR);
+        Stats.phase("copyObjects", t);
+        join(Heads.DEFAULTBRANCH_DIR, name).mkdir();
+        Heads.setBranchID(name + "/" + branch, head);
+    }
+
+    /** For push: append the commits of the current branch to the branch
+     *  BRANCH of the remote NAME. */
+    public static void push(String name, String branch) {
+        File remote = remoteDir(name);
+        Locks.ref(remote, branch);
+        String head = Heads.getCurrentID();
+        String remoteHead = Heads.branchID(remote, branch);
+        if (remoteHead != null && !isAncestor(remoteHead, head)) {
+            throw error("Please pull down remote changes before pushing.");
+        }
+        long t = Stats.start();
+        copyHistory(head, Repository.GITLET_DIR, remote);
+        Stats.phase("copyObjects", t);
+        Cache.write(join(remote, "refs", branch), head);
+    }
+
+    /** For pull: fetch the branch BRANCH of the remote NAME and merge it. */
+    public static void pull(String name, String branch) {
+        fetch(name, branch);
+        Repository.merge(name + "/" + branch);
+    }
+
+    /** get the .gitlet directory of the remote NAME. */
+    static File remoteDir(String name) {
+        File f = join(REMOTES_DIR, name);
+        if (!Cache.exists(f)) {
+            throw error("A remote with that name does not exist.");
+        }
+        File dir = new File(Cache.getString(f));
+        if (!dir.isAbsolute()) {
+            dir = join(Repository.CWD, dir.getPath());
+        }
+        if (!dir.isDirectory()) {
+            throw error("Remote directory not found.");
+        }
+        return dir;
+    }
+
+    /** check if the commit ANCESTOR is HEAD or one of its ancestors. */
+    private static boolean isAncestor(String ancestor, String head) {
+        Set<String> seen = new HashSet<>();
+        Queue<String> fringe = new ArrayDeque<>();
+        fringe.add(head);
+        while (!fringe.isEmpty()) {
+            String id = fringe.remove();
+            if (id.equals(ancestor)) {
+                return true;
+            }
+            if (seen.add(id)) {
+                fringe.addAll(Clone.parents(Commit.getCommit(id)));
+            }
+        }
+        return false;
+    }
+
+    /** copy the commit WANT and the history behind it from the .gitlet
+     *  directory FROM to the .gitlet directory TO, skipping what TO has.
+     *  The history stops where a shallow clone cut it off: pushing such a
+     *  history is refused, and fetching it makes this repository shallow
+     *  at the same commits. */
+    private static void copyHistory(String want, File from, File to) {
+        boolean pushing = from.equals(Repository.GITLET_DIR);
+        Set<String> fromShallow = pushing ? null : Clone.shallowIn(from);
+        List<String> cutOff = new ArrayList<>();
+        List<String> commits = new ArrayList<>();
+        Set<String> blobs = new LinkedHashSet<>();
+        Set<String> seen = new HashSet<>();
+        Queue<String> fringe = new ArrayDeque<>();
+        fringe.add(want);
+        while (!fringe.isEmpty()) {
+            String id = fringe.remove();
+            if (!seen.add(id) || object(to, "commits", id).isFile()) {
+                continue;
+            }
+            Commit c = Cache.getObject(object(from, "commits", id), Commit.class);
+            commits.add(id);
+            blobs.addAll(c.getToBlobs().values());
+            if (pushing ? Clone.isShallow(id) : fromShallow.contains(id)) {
+                for (String parent : c.getParent()) {
+                    if (!object(to, "commits", parent).isFile()) {
+                        if (pushing) {
+                            throw error("Cannot push history cut off by a shallow clone.");
+                        }
+                        cutOff.add(id);
+                        break;
+                    }
+                }
+                continue;
+            }
+            fringe.addAll(c.getParent());
+        }
+        for (String id : blobs) {
+            File dest = object(to, "blobs", id);
+            if (!dest.isFile()) {
+                if (pushing && !object(from, "blobs", id).isFile()) {
+                    Clone.fetchMissing(id);
+                }
+                File data = object(from, "data", id);
+                if (data.isFile()) {
+                    copy(data, object(to, "data", id));
+                }
+                copy(object(from, "blobs", id), dest);
+            }
+        }
+        Clone.addShallow(cutOff);
+        // commits last, so that a commit is never there without its blobs.
+        for (int i = commits.size() - 1; i >= 0; i -= 1) {
+            String id = commits.get(i);
+            copy(object(from, "commits", id), object(to, "commits", id));
+        }
+    }
+
+    /** get the file of the object ID of KIND in the .gitlet directory DIR. */
+    static File object(File dir, String kind, String id) {
+        return join(dir, "objects", kind, id.substring(0, 2), id);
+    }
+
+    /** copy the object file SRC to DEST, through a temporary file so that
+     *  DEST never exists half written. */
+    static void copy(File src, File dest) {
+        dest.getParentFile().mkdirs();
+        File tmp = Cache.tmpFile(dest);
+        copyContents(src, tmp);
+        Cache.rename(tmp, dest);
+    }
+}
@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Pairs removed files with added files of the same or similar contents.
+ *
+ *  Files with equal contents are paired first.  The rest are compared by
+ *  the sets of their lines: each file gets a MinHash signature of its line
+ *  hashes, and the signatures are cut into bands so that only files sharing
+ *  a whole band are compared (locality-sensitive hashing).  Candidates are
+ *  then scored exactly, as the share of distinct lines the two files have
+ *  in common, and paired best score first if they reach THRESHOLD.  With
+ *  BANDS bands of ROWS rows, a pair at the threshold is a candidate with
+ *  probability 1 - (1 - 0.5^ROWS)^BANDS, about 99%, while the number of
+ *  comparisons stays close to the number of files.
+ */
+public class Renames {
+    /** Least similarity, in percent, of a rename. */
+    static final int THRESHOLD = 50;
+
+    /** Number of bands of a signature. */
+    private static final int BANDS = 16;
+    /** Number of hashes per band. */
+    private static final int ROWS = 2;
+
+    /** Seeds of the hash functions of a signature. */
+    private static final long[] SEEDS = new long[BANDS * ROWS];
+
+    static {
+        Random r = new Random(0x5eed);
+        for (int i = 0; i < SEEDS.length; i += 1) {
+            SEEDS[i] = r.nextLong();
+        }
+    }
+
+    /** A file removed under one name and added under another. */
+    public static class Rename {
+        public final String from;
+        public final String to;
+        /** Similarity of the two versions, in percent. */
+        public final int similarity;
+
+        Rename(String from, String to, int similarity) {
+            this.from = from;
+            this.to = to;
+            this.similarity = similarity;
+        }
+    }
+
+    /** get the renames from the files REMOVED to the files ADDED, both
+     *  mapping names to contents, keyed by the old name. */
+    public static Map<String, Rename> detect(Map<String, String> removed,
+                                             Map<String, String> added) {
+        Map<String, Rename> result = new TreeMap<>();
+        if (removed.isEmpty() || added.isEmpty()) {
+            return result;
+        }
+        Set<String> paired = new HashSet<>();
+
+        Map<String, String> byContents = new HashMap<>();
+        for (Map.Entry<String, String> e : new TreeMap<>(removed).entrySet()) {
+            byContents.putIfAbsent(e.getValue(), e.getKey());
+        }
+        for (Map.Entry<String, String> e : new TreeMap<>(added).entrySet()) {
+            String from = byContents.remove(e.getValue());
+            if (from != null) {
+                result.put(from, new Rename(from, e.getKey(), 100));
+                paired.add(e.getKey());
+            }
+        }
+
+        Map<String, Set<Long>> oldLines = new HashMap<>();
+        Map<Long, List<String>> buckets = new HashMap<>();
+        for (Map.Entry<String, String> e : removed.entrySet()) {
+            if (!result.containsKey(e.getKey())) {
+                Set<Long> lines = lineHashes(e.getValue());
+                if (!lines.isEmpty()) {
+                    oldLines.put(e.getKey(), lines);
+                    long[] sig = signature(lines);
+                    for (int band = 0; band < BANDS; band += 1) {
+                        buckets.computeIfAbsent(bandKey(sig, band), k -> new ArrayList<>())
+                            .add(e.getKey());
+                    }
+                }
+            }
+        }
+        if (oldLines.isEmpty()) {
+            return result;
+        }
+
+        List<Rename> candidates = new ArrayList<>();
+        for (Map.Entry<String, String> e : added.entrySet()) {
+            if (paired.contains(e.getKey())) {
+                continue;
+            }
+            Set<Long> lines = lineHashes(e.getValue());
+            if (lines.isEmpty()) {
+                continue;
+            }
+            long[] sig = signature(lines);
+            Set<String> seen = new HashSet<>();
+            for (int band = 0; band < BANDS; band += 1) {
+                for (String from : buckets.getOrDefault(bandKey(sig, band), List.of())) {
+                    if (seen.add(from)) {
+                        int score = similarity(oldLines.get(from), lines);
+                        if (score >= THRESHOLD) {
+                            candidates.add(new Rename(from, e.getKey(), score));
+                        }
+                    }
+                }
+            }
+        }
+        candidates.sort((a, b) -> a.similarity != b.similarity
+            ? b.similarity - a.similarity
+            : (a.to + "\0" + a.from).compareTo(b.to + "\0" + b.from));
+        for (Rename r : candidates) {
+            if (!result.containsKey(r.from) && paired.add(r.to)) {
+                result.put(r.from, r);
+            }
+        }
+        return result;
+    }
+
+    /** get the distinct hashes of the lines of TEXT. */
+    private static Set<Long> lineHashes(String text) {
+        Set<Long> result = new HashSet<>();
+        for (String line : Diff.lines(text)) {
+            result.add(mix(line.hashCode() * 0x9E3779B97F4A7C15L + line.length()));
+        }
+        return result;
+    }
+
+    /** get the MinHash signature of the line hashes LINES. */
+    private static long[] signature(Set<Long> lines) {
+        long[] sig = new long[SEEDS.length];
+        Arrays.fill(sig, Long.MAX_VALUE);
+        for (long h : lines) {
+            for (int i = 0; i < SEEDS.length; i += 1) {
+                sig[i] = Math.min(sig[i], mix(h ^ SEEDS[i]));
+            }
+        }
+        return sig;
+    }
+
+    /** get the bucket key of band BAND of the signature SIG. */
+    private static long bandKey(long[] sig, int band) {
+        long key = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i += 1) {
+            key = mix(key * 31 + sig[i]);
+        }
+        return key;
+    }
+
+    /** get the share of A and B in common, in percent. */
+    private static int similarity(Set<Long> a, Set<Long> b) {
+        Set<Long> small = a.size() <= b.size() ? a : b;
+        Set<Long> large = small == a ? b : a;
+        int common = 0;
+        for (long h : small) {
+            if (large.contains(h)) {
+                common += 1;
+            }
+        }
+        return (int) (100L * common / (a.size() + b.size() - common));
+    }
+
+    /** scramble the bits of X (the MurmurHash3 finalizer). */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
@@ -3,6 +3,7 @@ package gitlet;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import static gitlet.Utils.*;
 import static gitlet.Utils.plainFilenamesIn;
 
@@ -24,28 +25,35 @@ public class Repository {
             message("A Gitlet version-control system already exists in the current directory.");
             return;
         } else {
-            GITLET_DIR.mkdir();
-            Commit.OBJECTS_DIR.mkdir();
-            Commit.COMMITS_DIR.mkdir();
-            Blob.BLOB_DIR.mkdir();
-            Staging.STAGING_DIR.mkdir();
-            Staging s = new Staging();
-            s.saveStage();
-            Heads.DEFAULTBRANCH_DIR.mkdir();
+            createDirectories();
         }
         Commit initialCommit = new Commit();
         initialCommit.saveCommit();
         String initialID = initialCommit.getID();
-        writeContents(join(Heads.DEFAULTBRANCH_DIR, "master"), initialID);
+        Heads.setBranchID("master", initialID);
         Heads.changeBranch("master");
     }
 
+    /** create an empty .gitlet directory, with no commits or branches. */
+    static void createDirectories() {
+        GITLET_DIR.mkdir();
+        Commit.OBJECTS_DIR.mkdir();
+        Commit.COMMITS_DIR.mkdir();
+        Blob.BLOB_DIR.mkdir();
+        Staging.STAGING_DIR.mkdir();
+        Staging s = new Staging();
+        s.saveStage();
+        Heads.DEFAULTBRANCH_DIR.mkdir();
+    }
+
     /** For Staging. */
     public static void staging(String fileName) {
+        Locks.head(true);
+        Locks.staging();
         // case 1: the file has staged for remove.
         Staging s = Staging.getStage();
         if (s.getToRemoves().contains(fileName)) {
-            s.getToRemoves().remove(fileName);
+            s.cancelRemove(fileName);
         // case 2: the file is identical to the version in the current commit.
         } else if (checkForCommit(fileName, Heads.getCurrent())) {
             if (checkForStaging(fileName)) {
@@ -54,15 +62,13 @@ public class Repository {
         } else {
             s.addStaging(fileName, stagingBlob(fileName));
         }
-        s.saveStage();
     }
 
     /** get the staging file into a blob. */
     private static Blob stagingBlob(String fileName) {
         File f = new File(fileName);
         if (!f.exists()) {
-            message("File does not exist.", f);
-            System.exit(0);
+            throw error("File does not exist.");
         }
         return new Blob(fileName, readContentsAsString(f));
     }
@@ -71,8 +77,10 @@ public class Repository {
      *  check if current file is identical to the version in the commit
      */
     private static boolean checkForCommit(String fileName, Commit c) {
-        Blob toStage = stagingBlob(fileName);      // the blob to be added.
-        String toStageID = toStage.getID();
+        String toStageID = WorkTree.blobID(fileName);      // the blob to be added.
+        if (toStageID == null) {
+            throw error("File does not exist.");
+        }
 
         Map<String, String> m = c.getToBlobs();    // blob in the commits.
         return (m.containsValue(toStageID));
@@ -83,8 +91,7 @@ public class Repository {
      */
     private static boolean checkForStaging(String fileName) {
         // get ID from the blob to be staged.
-        Blob toStage = stagingBlob(fileName);
-        String toStageID = toStage.getID();
+        String toStageID = WorkTree.blobID(fileName);
 
         // get ID from staging map with the same name
         Staging s = Staging.getStage();
@@ -96,22 +103,33 @@ public class Repository {
     /** For Commit.
     /* Move staging files to the Commit File when use the commit command. */
     public static void makeCommit(String message, String branch) {
+        Locks.head(true);
+        Locks.staging();
+        Locks.ref(Heads.currentBranch());
         Staging s = Staging.getStage();
         if (s.getToBlobs().isEmpty() && s.getToRemoves().isEmpty()) {
-            message("No changes added to the commit.");
-            System.exit(0);
+            throw error("No changes added to the commit.");
         }
 
+        long t = Stats.start();
         Commit c = new Commit(message, branch);
+        Stats.phase("buildCommit", t);
+        t = Stats.start();
         c.saveCommit();
+        Set<String> changed = new HashSet<>(s.getToBlobs().keySet());
+        changed.addAll(s.getToRemoves());
+        ChangedPaths.record(c, changed);
         String commitID = c.getID();
-        writeContents(join(Heads.DEFAULTBRANCH_DIR, Heads.currentBranch()), commitID);
+        Heads.setBranchID(Heads.currentBranch(), commitID);
 
         Staging.clear();
+        Stats.phase("saveCommit", t);
     }
 
     /** For remove. */
     public static void makeRemove(String fileName) {
+        Locks.head(true);
+        Locks.staging();
         Staging s = Staging.getStage();
         Commit c = Heads.getCurrent();
         // case: file staged for addition.
@@ -120,27 +138,50 @@ public class Repository {
 
         // case: file tracked for the current commit.
         } else if (c.getToBlobs().containsKey(fileName)) {
-            List<String> removingBlobs = s.getToRemoves();
-            removingBlobs.add(fileName);
+            s.addRemove(fileName);
             File f = new File(fileName);
             restrictedDelete(f);
 
         } else {
             message("No reason to remove the file.");
         }
-        s.saveStage();
     }
 
     /** For log. */
     public static void makeLog() {
         Commit c = Heads.getCurrent();
-        while (!c.getParent().isEmpty()) {
+        while (!Clone.parents(c).isEmpty()) {
             printInfo(c);
             List<String> parent = c.getParent();
             c = Commit.getCommit(parent.get(0));
         }
-        Commit initialCommit = new Commit();
-        printInfo(initialCommit);
+        printInfo(c);
+    }
+
+    /** For log -- [file name]: the commits of log that changed FILENAME
+     *  relative to their first parent.  Commits are only decoded if their
+     *  changed-path filter may contain the file. */
+    public static void makeLog(String fileName) {
+        Map<String, ChangedPaths.Entry> filters = ChangedPaths.load();
+        String id = Heads.getCurrentID();
+        while (id != null) {
+            ChangedPaths.Entry e = filters.get(id);
+            List<String> parents;
+            if (e == null || e.mightContain(fileName)) {
+                Commit c = Commit.getCommit(id);
+                parents = Clone.parents(c);
+                String before = null;
+                if (!parents.isEmpty()) {
+                    before = Commit.getCommit(parents.get(0)).getToBlobs().get(fileName);
+                }
+                if (!Objects.equals(before, c.getToBlobs().get(fileName))) {
+                    printInfo(c);
+                }
+            } else {
+                parents = e.parents;
+            }
+            id = parents.isEmpty() ? null : parents.get(0);
+        }
     }
 
     /** format the date presentation. */
@@ -201,7 +242,7 @@ public class Repository {
     /** For status. */
     public static void makeStatus() {
         System.out.println("=== Branches ===");
-        for (String branches: plainFilenamesIn(Heads.DEFAULTBRANCH_DIR)) {
+        for (String branches: Heads.branches()) {
             if (branches.equals(Heads.currentBranch())) {
                 System.out.println("*" + branches);
             } else {
@@ -211,8 +252,27 @@ public class Repository {
         System.out.println();
         System.out.println("=== Staged Files ===");
         Staging s = Staging.getStage();
+        Map<String, String> renamedFrom = new HashMap<>();
+        if (!s.getToRemoves().isEmpty() && !s.getToBlobs().isEmpty()) {
+            Map<String, String> current = Heads.getCurrent().getToBlobs();
+            Map<String, String> removed = new HashMap<>();
+            for (String name : s.getToRemoves()) {
+                removed.put(name, blobContents(current.get(name)));
+            }
+            Map<String, String> added = new HashMap<>();
+            for (Map.Entry<String, String> e : s.getToBlobs().entrySet()) {
+                added.put(e.getKey(), blobContents(e.getValue()));
+            }
+            for (Renames.Rename r : Renames.detect(removed, added).values()) {
+                renamedFrom.put(r.to, r.from);
+            }
+        }
         for (String stagings: s.getToBlobs().keySet()) {
-            System.out.println(stagings);
+            if (renamedFrom.containsKey(stagings)) {
+                System.out.println(stagings + " (renamed from " + renamedFrom.get(stagings) + ")");
+            } else {
+                System.out.println(stagings);
+            }
         }
         System.out.println();
         System.out.println("=== Removed Files ===");
@@ -226,6 +286,141 @@ public class Repository {
         System.out.println();
     }
 
+    /** For diff [branch name [branch name]].  Without branches, compares the
+     *  current commit with the working directory; with one, that branch's
+     *  head with the working directory; with two, the first head with the
+     *  second.  Files with the same blob on both sides are skipped without
+     *  being read, removed and added files with similar contents are shown
+     *  as renames, and the changed files are diffed in parallel but printed
+     *  in name order. */
+    public static void makeDiff(String... branchNames) {
+        for (String name : branchNames) {
+            if (!Heads.exists(name)) {
+                if (branchNames.length == 1) {
+                    throw error("A branch with that name does not exist.");
+                }
+                throw error("At least one branch does not exist.");
+            }
+        }
+        Map<String, String> from = branchNames.length == 0
+            ? Heads.getCurrent().getToBlobs()
+            : Commit.getCommit(Heads.getBranchID(branchNames[0])).getToBlobs();
+        Map<String, String> to;
+        Map<String, String> working = new HashMap<>();
+        if (branchNames.length == 2) {
+            to = Commit.getCommit(Heads.getBranchID(branchNames[1])).getToBlobs();
+        } else {
+            to = new HashMap<>();
+            Staging s = Staging.getStage();
+            Set<String> tracked = new TreeSet<>(Heads.getCurrent().getToBlobs().keySet());
+            tracked.addAll(s.getToBlobs().keySet());
+            tracked.removeAll(s.getToRemoves());
+            for (String name : tracked) {
+                // files outside the sparse checkout are taken to be unchanged.
+                String id = Sparse.includes(name) ? WorkTree.blobID(name)
+                    : s.getToBlobs().getOrDefault(name, Heads.getCurrent().getToBlobs().get(name));
+                if (id != null) {
+                    to.put(name, id);
+                }
+            }
+        }
+
+        Set<String> changed = new TreeSet<>();
+        for (String name : from.keySet()) {
+            if (!from.get(name).equals(to.get(name))) {
+                changed.add(name);
+            }
+        }
+        for (String name : to.keySet()) {
+            if (!from.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+        if (branchNames.length < 2) {
+            // only the changed working files are read.
+            for (String name : changed) {
+                if (to.containsKey(name)) {
+                    working.put(name, Sparse.includes(name)
+                                ? readContentsAsString(join(CWD, name)) : blobContents(to.get(name)));
+                }
+            }
+        }
+        Map<String, String> removed = new HashMap<>();
+        Map<String, String> added = new HashMap<>();
+        for (String name : changed) {
+            if (!to.containsKey(name)) {
+                removed.put(name, blobContents(from.get(name)));
+            } else if (!from.containsKey(name)) {
+                added.put(name, branchNames.length == 2
+                                ? blobContents(to.get(name)) : working.get(name));
+            }
+        }
+        long t = Stats.start();
+        Map<String, Renames.Rename> renames = Renames.detect(removed, added);
+        Stats.phase("renames", t);
+
+        // each file is shown under its new name, renamed ones with their old one.
+        Map<String, String> oldNames = new TreeMap<>();
+        for (String name : changed) {
+            if (!renames.containsKey(name)) {
+                oldNames.put(name, name);
+            }
+        }
+        for (Renames.Rename r : renames.values()) {
+            oldNames.put(r.to, r.from);
+        }
+        t = Stats.start();
+        oldNames.entrySet().parallelStream()
+            .map(e -> {
+                String oldName = e.getValue();
+                String newName = e.getKey();
+                String a = removed.containsKey(oldName)
+                    ? removed.get(oldName) : blobContents(from.get(oldName));
+                String b = added.containsKey(newName) ? added.get(newName)
+                    : branchNames.length == 2 ? blobContents(to.get(newName))
+                    : working.get(newName);
+                if (!oldName.equals(newName)) {
+                    return diffRename(renames.get(oldName), a, b);
+                }
+                return diffFile(newName, a, b);
+            })
+            .forEachOrdered(System.out::print);
+        Stats.phase("diffFiles", t);
+    }
+
+    /** get the diff of the rename R from contents A to contents B. */
+    private static String diffRename(Renames.Rename r, String a, String b) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("diff --git a/").append(r.from).append(" b/").append(r.to).append("\n");
+        sb.append("similarity index ").append(r.similarity).append("%\n");
+        sb.append("rename from ").append(r.from).append("\n");
+        sb.append("rename to ").append(r.to).append("\n");
+        if (!a.equals(b)) {
+            sb.append("--- a/").append(r.from).append("\n");
+            sb.append("+++ b/").append(r.to).append("\n");
+            Diff.unified(Diff.lines(a), Diff.lines(b), sb);
+        }
+        return sb.toString();
+    }
+
+    /** get the contents of the blob BLOBID, or null if BLOBID is null. */
+    private static String blobContents(String blobID) {
+        return blobID == null ? null : Blob.getBlob(blobID).getContents();
+    }
+
+    /** get the diff of NAME from contents A to contents B, where null
+     *  stands for a missing file. */
+    private static String diffFile(String name, String a, String b) {
+        String aName = a == null ? "/dev/null" : "a/" + name;
+        String bName = b == null ? "/dev/null" : "b/" + name;
+        StringBuilder sb = new StringBuilder();
+        sb.append("diff --git ").append(aName).append(" ").append(bName).append("\n");
+        sb.append("--- ").append(aName).append("\n");
+        sb.append("+++ ").append(bName).append("\n");
+        Diff.unified(Diff.lines(a == null ? "" : a), Diff.lines(b == null ? "" : b), sb);
+        return sb.toString();
+    }
+
     /** For checkout -- [file name] style. */
     public static void checkoutFile(String fileName) {
         String commitID = Heads.getCurrentID();
@@ -248,17 +443,16 @@ public class Repository {
             return;
         }
         String blobID = m.get(fileName);
-        Blob b = Blob.getBlob(blobID);
-        String blobFile = b.getContents();
         File workingFile = new File(fileName);
-        writeContents(workingFile, blobFile);
+        Blob.checkout(blobID, workingFile);
     }
 
     /** For checkout [branch name] style. */
     public static void checkoutBranch(String name) {
         //checkout Branch
-        File branch = join(Heads.DEFAULTBRANCH_DIR, name);
-        if (!branch.exists()) {
+        Locks.head(false);
+        Locks.staging();
+        if (!Heads.exists(name)) {
             message("No such branch exists.");
             return;
         }
@@ -267,52 +461,56 @@ public class Repository {
             return;
         }
 
-        String commitID = readContentsAsString(branch);
+        String commitID = Heads.getBranchID(name);
         Commit checkout = Commit.getCommit(commitID);
         Map<String, String> checkoutMap = checkout.getToBlobs();
         Commit current = Heads.getCurrent();
         Map<String, String> currentMap = current.getToBlobs();
 
         // case: working files not tracked in the current branch will be modified in the checkout.
+        long t = Stats.start();
         checkUntracked(checkout);
+        Stats.phase("checkUntracked", t);
 
         // case: put files in the checkout branch into the working directory.
+        t = Stats.start();
         for (String fileName: checkoutMap.keySet()) {
-            checkoutCommit(commitID, fileName);
+            if (Sparse.includes(fileName)) {
+                checkoutCommit(commitID, fileName);
+            }
         }
+        Stats.phase("writeFiles", t);
 
         // case: delete files tracked in the current branch but not in the checkout branch.
+        t = Stats.start();
         for (String fileName: currentMap.keySet()) {
             if (!checkoutMap.containsKey(fileName)) {
                 File f = new File(fileName);
                 f.delete();
             }
         }
+        Stats.phase("deleteFiles", t);
 
         Staging.clear();
-        writeContents(join(Heads.DEFAULTBRANCH_DIR, name), commitID);
         Heads.changeBranch(name);
     }
 
     /** check for working files not tracked in the current branch will be modified. */
     private static void checkUntracked(Commit c) {
-        List<String> workingFiles = plainFilenamesIn(CWD);
-        if (workingFiles == null) {
-            return;
-        }
+        List<String> workingFiles = WorkTree.files();
         Commit current = Heads.getCurrent();
         Map<String, String> currentMap = current.getToBlobs();
         Map<String, String> checkMap = c.getToBlobs();
         for (String workingFile: workingFiles) {
             // checks if the current branch track file & if the checkout contains working file name.
-            if ((!currentMap.containsKey(workingFile)) && (checkMap.containsKey(workingFile))) {
+            if ((!currentMap.containsKey(workingFile)) && (checkMap.containsKey(workingFile))
+                && Sparse.includes(workingFile)) {
 
                 // check if the working file is the same as the checkout version
                 // a.k.a whether the working file will be overwritten.
                 if (!checkForCommit(workingFile, c)) {
-                    message("There is an untracked file in the way; delete it, "
+                    throw error("There is an untracked file in the way; delete it, "
                             + "or add and commit it first.");
-                    System.exit(0);
                 }
             }
         }
@@ -320,56 +518,66 @@ public class Repository {
 
     /** For branch. */
     public static void makeBranch(String name) {
-        File branch = join(Heads.DEFAULTBRANCH_DIR, name);
-        if (branch.exists()) {
+        Locks.ref(name);
+        if (Heads.exists(name)) {
             message("A branch with that name already exists.");
             return;
         }
         String currentID = Heads.getCurrentID();
-        writeContents(join(Heads.DEFAULTBRANCH_DIR, name), currentID);
+        Heads.setBranchID(name, currentID);
     }
 
     /** For remove branch. */
     public static void removeBranch(String name) {
-        File branch = join(Heads.DEFAULTBRANCH_DIR, name);
-        if (!branch.exists()) {
-            message("A branch with that name does not exist.");
-            System.exit(0);
+        Locks.head(true);
+        Locks.ref(name);
+        if (!Heads.exists(name)) {
+            throw error("A branch with that name does not exist.");
         }
         if (name.equals(Heads.currentBranch())) {
-            message("Cannot remove the current branch.");
-            System.exit(0);
+            throw error("Cannot remove the current branch.");
         }
-        branch.delete();
+        Heads.removeBranch(name);
     }
 
     /** For reset. */
     public static void makeReset(String commitID) {
+        Locks.head(true);
+        Locks.staging();
+        Locks.ref(Heads.currentBranch());
         File f = join(Commit.COMMITS_DIR, commitID.substring(0, 2));
         if (!f.exists()) {
             message("No commit with that id exists.");
             return;
         }
         commitID = plainFilenamesIn(f).get(0);
-        Commit c = readObject(join(f, commitID), Commit.class);
+        Commit c = Commit.getCommit(commitID);
+        long t = Stats.start();
         checkUntracked(c);
+        Stats.phase("checkUntracked", t);
+        t = Stats.start();
         Map<String, String> m = c.getToBlobs();
         for (String fileName: m.keySet()) {
-            checkoutCommit(commitID, fileName);
+            if (Sparse.includes(fileName)) {
+                checkoutCommit(commitID, fileName);
+            }
         }
+        Stats.phase("writeFiles", t);
         Staging.clear();
-        writeContents(join(Heads.DEFAULTBRANCH_DIR, Heads.currentBranch()), commitID);
+        Heads.setBranchID(Heads.currentBranch(), commitID);
     }
 
     /** For merge. */
     public static void merge(String branchName) {
+        // exclusive, since a fast-forward checks out the given branch.
+        Locks.head(false);
+        Locks.staging();
+        Locks.ref(Heads.currentBranch());
         Staging s = Staging.getStage();
         if ((!s.getToBlobs().isEmpty()) || (!s.getToRemoves().isEmpty())) {
-            message("You have uncommitted changes.");
-            System.exit(0);
+            throw error("You have uncommitted changes.");
         }
-        File branch = join(Heads.DEFAULTBRANCH_DIR, branchName);
-        if (!branch.exists()) {
+        if (!Heads.exists(branchName)) {
             message("A branch with that name does not exist.");
             return;
         }
@@ -379,8 +587,13 @@ public class Repository {
         }
 
         String givenBranchID = Heads.getBranchID(branchName);
+        long t = Stats.start();
         String splitPointID = splitPoint(branchName);
+        Stats.phase("splitPoint", t);
         String currentBranchID = Heads.getCurrentID();
+        if (splitPointID == null) {
+            throw error("No split point in the history of this shallow clone.");
+        }
         if (splitPointID.equals(givenBranchID)) {
             message("Given branch is an ancestor of the current branch.");
             return;
@@ -393,16 +606,42 @@ public class Repository {
 
         // to get all the files in three points.
         Commit givenBranch = Commit.getCommit(givenBranchID);
+        t = Stats.start();
         checkUntracked(givenBranch);
+        Stats.phase("checkUntracked", t);
         Commit splitPoint = Commit.getCommit(splitPointID);
         Commit currentBranch = Heads.getCurrent();
-        Map<String, String> givenBlobs = givenBranch.getToBlobs();
-        Map<String, String> splitBlobs = splitPoint.getToBlobs();
-        Map<String, String> currentBlobs = currentBranch.getToBlobs();
+        Map<String, String> givenBlobs = new HashMap<>(givenBranch.getToBlobs());
+        Map<String, String> splitBlobs = new HashMap<>(splitPoint.getToBlobs());
+        Map<String, String> currentBlobs = new HashMap<>(currentBranch.getToBlobs());
+
+        // follow files renamed on one side while the other side still has
+        // them under the old name, by merging them under the new name.
+        t = Stats.start();
+        List<String> renamedAway = new ArrayList<>();
+        for (Renames.Rename r : renamesSince(splitBlobs, currentBlobs).values()) {
+            if (givenBlobs.containsKey(r.from) && !givenBlobs.containsKey(r.to)) {
+                splitBlobs.put(r.to, splitBlobs.remove(r.from));
+                givenBlobs.put(r.to, givenBlobs.remove(r.from));
+            }
+        }
+        for (Renames.Rename r : renamesSince(splitBlobs, givenBlobs).values()) {
+            if (currentBlobs.containsKey(r.from) && !currentBlobs.containsKey(r.to)) {
+                splitBlobs.put(r.to, splitBlobs.remove(r.from));
+                currentBlobs.put(r.to, currentBlobs.remove(r.from));
+                renamedAway.add(r.from);
+            }
+        }
+        Stats.phase("renames", t);
         Set<String> modifies = new HashSet<>();
         modifies.addAll(givenBlobs.keySet());
         modifies.addAll(currentBlobs.keySet());
 
+        // decide what happens to every file from the three maps alone.
+        t = Stats.start();
+        Map<String, String> takeGiven = new TreeMap<>();
+        Set<String> combine = new TreeSet<>();
+        Set<String> removes = new TreeSet<>(renamedAway);
         for (String modifiedGiven: modifies) {
             String givenVersion = givenBlobs.get(modifiedGiven);
             String splitVersion = splitBlobs.get(modifiedGiven);
@@ -410,56 +649,115 @@ public class Repository {
 
             //case 5: files present only in the given branch
             if (splitVersion == null && currentVersion == null) {
-                checkoutCommit(givenBranchID, modifiedGiven);
-                staging(modifiedGiven);
-
+                takeGiven.put(modifiedGiven, givenVersion);
 
             } else if (Objects.equals(splitVersion, currentVersion)) {
                 //case 6: files unmodified in the current branch, absent in the given branch
                 if (givenVersion == null) {
-                    makeRemove(modifiedGiven);
+                    removes.add(modifiedGiven);
 
                 //case 1: files in given branch modified but current branch unmodified.
                 } else if (!currentVersion.equals(givenVersion)) {
-                    checkoutCommit(givenBranchID, modifiedGiven);
-                    staging(modifiedGiven);
+                    takeGiven.put(modifiedGiven, givenVersion);
                 }
 
                 //case 8: files modified differently in current branch
             } else if (!Objects.equals(givenVersion, currentVersion)) {
                 // control for cases 2, 4, 7, like files only modified in current branch.
                 if (!Objects.equals(splitVersion, givenVersion)) {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("<<<<<<< HEAD\n");
-                    if (currentVersion != null) {
-                        Blob currentBlob = Blob.getBlob(currentVersion);
-                        String currentContents = currentBlob.getContents();
-                        sb.append(currentContents);
-                    }
-                    sb.append("=======\n");
-                    if (givenVersion != null) {
-                        Blob givenBlob = Blob.getBlob(givenVersion);
-                        String givenContents = givenBlob.getContents();
-                        sb.append(givenContents);
-                    }
-                    sb.append(">>>>>>>\n");
-                    writeContents(join(CWD, modifiedGiven), sb.toString());
-                    message("Encountered a merge conflict.");
-                    staging(modifiedGiven);
+                    combine.add(modifiedGiven);
                 }
             }
         }
+        Stats.phase("decide", t);
+
+        // write the files in parallel, then record them in the staging area once.
+        t = Stats.start();
+        Map<String, String> staged = new ConcurrentHashMap<>(takeGiven);
+        Set<String> conflicts = ConcurrentHashMap.newKeySet();
+        takeGiven.entrySet().parallelStream()
+            .filter(e -> Sparse.includes(e.getKey()))
+            .forEach(e -> Blob.checkout(e.getValue(), join(CWD, e.getKey())));
+        combine.parallelStream().forEach(name -> {
+            String currentVersion = currentBlobs.get(name);
+            String givenVersion = givenBlobs.get(name);
+            String contents;
+            // both sides changed the file: merge their changes line by line.
+            if (currentVersion != null && givenVersion != null) {
+                String base = splitBlobs.containsKey(name)
+                    ? blobContents(splitBlobs.get(name)) : "";
+                Diff3 d = new Diff3(base, blobContents(currentVersion),
+                                    blobContents(givenVersion));
+                contents = d.getMerged();
+                if (d.hasConflict()) {
+                    conflicts.add(name);
+                }
+            } else {
+                StringBuilder sb = new StringBuilder();
+                sb.append("<<<<<<< HEAD\n");
+                if (currentVersion != null) {
+                    sb.append(blobContents(currentVersion));
+                }
+                sb.append("=======\n");
+                if (givenVersion != null) {
+                    sb.append(blobContents(givenVersion));
+                }
+                sb.append(">>>>>>>\n");
+                contents = sb.toString();
+                conflicts.add(name);
+            }
+            // a conflict is written even outside the sparse checkout, to be resolved.
+            if (conflicts.contains(name) || Sparse.includes(name)) {
+                writeContents(join(CWD, name), contents);
+            }
+            Blob b = new Blob(name, contents);
+            b.saveBlob();
+            staged.put(name, b.getID());
+        });
+        if (!conflicts.isEmpty()) {
+            message("Encountered a merge conflict.");
+        }
+
+        Map<String, String> tracked = currentBranch.getToBlobs();
+        staged.entrySet().removeIf(e -> e.getValue().equals(tracked.get(e.getKey())));
+        removes.retainAll(tracked.keySet());
+        for (String name : removes) {
+            restrictedDelete(join(CWD, name));
+        }
+        s.stageAll(staged, removes);
+        Stats.phase("mergeFiles", t);
         makeCommit("Merged " + branchName + " into " + Heads.currentBranch() + ".", branchName);
     }
 
-    private static String splitPoint(String branchName) {
+    /** get the renames between the file maps SPLIT and SIDE. */
+    private static Map<String, Renames.Rename> renamesSince(Map<String, String> split,
+                                                           Map<String, String> side) {
+        List<String> removedNames = new ArrayList<>(split.keySet());
+        removedNames.removeAll(side.keySet());
+        List<String> addedNames = new ArrayList<>(side.keySet());
+        addedNames.removeAll(split.keySet());
+        if (removedNames.isEmpty() || addedNames.isEmpty()) {
+            return new TreeMap<>();
+        }
+        Map<String, String> removed = new HashMap<>();
+        for (String name : removedNames) {
+            removed.put(name, blobContents(split.get(name)));
+        }
+        Map<String, String> added = new HashMap<>();
+        for (String name : addedNames) {
+            added.put(name, blobContents(side.get(name)));
+        }
+        return Renames.detect(removed, added);
+    }
+
+    static String splitPoint(String branchName) {
         Queue<String> fringe = new LinkedList<>();
         fringe.add(Heads.getCurrent().getID());
         Set<String> commits = new HashSet<>();
         while (!fringe.isEmpty()) {
             String currentBranchID = fringe.remove();
             Commit currentBranch = Commit.getCommit(currentBranchID);
-            List<String> parents = currentBranch.getParent();
+            List<String> parents = Clone.parents(currentBranch);
             commits.add(currentBranchID);
             if (!parents.isEmpty()) {
                 for (String parent: parents) {
@@ -469,14 +767,14 @@ public class Repository {
         }
 
         Queue<String> branchCommits = new LinkedList<>();
-        branchCommits.add(readContentsAsString(join(Heads.DEFAULTBRANCH_DIR, branchName)));
+        branchCommits.add(Heads.getBranchID(branchName));
         while (!branchCommits.isEmpty()) {
             String givenBranchID = branchCommits.remove();
             if (commits.contains(givenBranchID)) {
                 return givenBranchID;
             }
             Commit givenBranch = Commit.getCommit(givenBranchID);
-            List<String> parents = givenBranch.getParent();
+            List<String> parents = Clone.parents(givenBranch);
             if (!parents.isEmpty()) {
                 for (String parent: parents) {
                     branchCommits.add(parent);
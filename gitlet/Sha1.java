@@ -0,0 +1,222 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** A SHA-1 hash computed by streaming its input, with few allocations.
+ *
+ *  Each thread has one Sha1, whose MessageDigest and buffers are reused:
+ *  start() resets it, the update methods feed it, and hex() returns the
+ *  hash.  Strings are encoded to UTF-8 into a fixed buffer as they are
+ *  fed, exactly as String.getBytes would encode them, so no byte array
+ *  the size of the String is made; the hex digits come from a table.
+ *  Since the Sha1 is shared by the thread, a hash must be finished before
+ *  another one is started on the same thread.
+ */
+final class Sha1 {
+    /** The Sha1 of each thread. */
+    private static final ThreadLocal<Sha1> HASHERS = ThreadLocal.withInitial(Sha1::new);
+
+    /** The hex digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Longest String encoded a char at a time rather than by the encoder. */
+    private static final int SHORT = 256;
+
+    /** Length of a SHA-1 in bytes. */
+    private static final int LENGTH = 20;
+
+    /** The digest being fed. */
+    private final MessageDigest md;
+
+    /** Bytes encoded but not fed to MD yet. */
+    private final byte[] buffer = new byte[8192];
+
+    /** Chars of a String being encoded. */
+    private final char[] chars = new char[4096];
+
+    /** CHARS and BUFFER as buffers, for ENCODER. */
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+    /** The UTF-8 encoder, replacing unpaired surrogates with '?' as
+     *  String.getBytes does. */
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /** Number of bytes in BUFFER. */
+    private int used;
+
+    /** The finished hash. */
+    private final byte[] hash = new byte[LENGTH];
+
+    /** Buffer for reading channels. */
+    private ByteBuffer direct;
+
+    private Sha1() {
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** get the Sha1 of this thread, reset for a new hash. */
+    static Sha1 start() {
+        Sha1 h = HASHERS.get();
+        h.md.reset();
+        h.used = 0;
+        return h;
+    }
+
+    /** feed the bytes of B. */
+    Sha1 update(byte[] b) {
+        drain();
+        md.update(b);
+        return this;
+    }
+
+    /** feed the remaining bytes of B. */
+    Sha1 update(ByteBuffer b) {
+        drain();
+        md.update(b);
+        return this;
+    }
+
+    /** feed everything that can be read from IN. */
+    Sha1 update(ReadableByteChannel in) throws IOException {
+        drain();
+        if (direct == null) {
+            direct = ByteBuffer.allocateDirect(64 * 1024);
+        }
+        while (in.read(direct) >= 0) {
+            direct.flip();
+            md.update(direct);
+            direct.clear();
+        }
+        return this;
+    }
+
+    /** feed the UTF-8 encoding of S. */
+    Sha1 update(String s) {
+        int n = s.length();
+        if (n <= SHORT) {
+            updateShort(s);
+            return this;
+        }
+        int i = 0;
+        while (i < n) {
+            // copy a chunk out of S, not splitting a surrogate pair.
+            int len = Math.min(n - i, chars.length);
+            if (i + len < n && Character.isHighSurrogate(s.charAt(i + len - 1))) {
+                len -= 1;
+            }
+            s.getChars(i, i + len, chars, 0);
+            i += len;
+            charBuffer.clear().limit(len);
+            byteBuffer.position(used);
+            encoder.reset();
+            while (encoder.encode(charBuffer, byteBuffer, true).isOverflow()) {
+                used = byteBuffer.position();
+                drain();
+                byteBuffer.clear();
+            }
+            used = byteBuffer.position();
+        }
+        return this;
+    }
+
+    /** feed the UTF-8 encoding of S, of at most SHORT chars, a char at a
+     *  time, which for names and ids beats setting up the encoder. */
+    private void updateShort(String s) {
+        int n = s.length();
+        if (used > buffer.length - 3 * SHORT) {
+            drain();
+        }
+        byte[] out = buffer;
+        int u = used;
+        for (int k = 0; k < n; k += 1) {
+            char c = s.charAt(k);
+            if (c < 0x80) {
+                out[u++] = (byte) c;
+            } else if (c < 0x800) {
+                out[u++] = (byte) (0xc0 | (c >> 6));
+                out[u++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && k + 1 < n
+                       && Character.isLowSurrogate(s.charAt(k + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(k + 1));
+                k += 1;
+                out[u++] = (byte) (0xf0 | (cp >> 18));
+                out[u++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                out[u++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                out[u++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate, which getBytes replaces with '?'.
+                out[u++] = (byte) '?';
+            } else {
+                out[u++] = (byte) (0xe0 | (c >> 12));
+                out[u++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[u++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        used = u;
+    }
+
+    /** feed the String S, which must be ASCII, e.g. a SHA-1 in hex.  Its
+     *  chars are copied as bytes without being looked at. */
+    @SuppressWarnings("deprecation")
+    Sha1 updateAscii(String s) {
+        int n = s.length();
+        if (n > buffer.length) {
+            return update(s);
+        }
+        if (used > buffer.length - n) {
+            drain();
+        }
+        s.getBytes(0, n, buffer, used);
+        used += n;
+        return this;
+    }
+
+    /** feed the character C, which must be ASCII. */
+    Sha1 update(char c) {
+        if (used == buffer.length) {
+            drain();
+        }
+        buffer[used++] = (byte) c;
+        return this;
+    }
+
+    /** get the hash of what was fed, in hex. */
+    String hex() {
+        drain();
+        try {
+            md.digest(hash, 0, LENGTH);
+        } catch (DigestException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        char[] result = new char[2 * LENGTH];
+        for (int i = 0; i < LENGTH; i += 1) {
+            result[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** feed the bytes waiting in BUFFER. */
+    private void drain() {
+        if (used > 0) {
+            md.update(buffer, 0, used);
+            used = 0;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static gitlet.Utils.*;
+
+/** Sparse checkout: only the files matching some patterns are written to
+ *  the working directory.
+ *
+ *  The patterns are globs (as for PathMatcher) over file names, one per
+ *  line of .gitlet/sparse-checkout; without the file every file matches.
+ *  Checkout, reset and merge write only matching files, and diff and the
+ *  check for untracked files take the other tracked files to be as they
+ *  are in the current commit without looking for them.  Commits are
+ *  built from the staging area on top of their parent, so they still
+ *  hold every file.
+ */
+public class Sparse {
+    /** The file of the patterns. */
+    static final File FILE = join(".gitlet", "sparse-checkout");
+
+    /** The contents of FILE that MATCHERS were made from. */
+    private static String patterns;
+
+    /** The matchers of the patterns. */
+    private static List<PathMatcher> matchers = new ArrayList<>();
+
+    /** For sparse-checkout set [pattern]...: write only the files matching
+     *  PATTERNS from now on, and bring the working directory in line. */
+    public static void set(List<String> patterns) {
+        Locks.head(true);
+        Locks.staging();
+        for (String pattern : patterns) {
+            try {
+                FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            } catch (IllegalArgumentException excp) {
+                throw error("Invalid pattern: %s", pattern);
+            }
+        }
+        Cache.putString(FILE, String.join("\n", patterns) + "\n");
+        update();
+    }
+
+    /** For sparse-checkout disable: write every file again. */
+    public static void disable() {
+        Locks.head(true);
+        Locks.staging();
+        if (Cache.exists(FILE)) {
+            Cache.delete(FILE);
+        }
+        update();
+    }
+
+    /** For sparse-checkout list. */
+    public static void list() {
+        if (Cache.exists(FILE)) {
+            System.out.print(Cache.getString(FILE));
+        }
+    }
+
+    /** check if the file NAME belongs in the working directory. */
+    public static synchronized boolean includes(String name) {
+        if (!Cache.exists(FILE)) {
+            return true;
+        }
+        String contents = Cache.getString(FILE);
+        if (contents != patterns) {
+            List<PathMatcher> result = new ArrayList<>();
+            for (String pattern : contents.split("\n")) {
+                if (!pattern.isEmpty()) {
+                    result.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+                }
+            }
+            matchers = result;
+            patterns = contents;
+        }
+        for (PathMatcher m : matchers) {
+            if (m.matches(Paths.get(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** write the files of the current commit that now match and are
+     *  missing, and delete the ones that no longer match, unless they
+     *  have changes that are not committed. */
+    private static void update() {
+        Map<String, String> current = Heads.getCurrent().getToBlobs();
+        Staging s = Staging.getStage();
+        for (Map.Entry<String, String> e : current.entrySet()) {
+            String name = e.getKey();
+            File f = join(Repository.CWD, name);
+            if (includes(name)) {
+                if (!f.exists() && !s.getToRemoves().contains(name)) {
+                    Blob.checkout(e.getValue(), f);
+                }
+            } else if (!s.getToBlobs().containsKey(name)
+                       && e.getValue().equals(WorkTree.blobID(name))) {
+                f.delete();
+            }
+        }
+    }
+}
@@ -1,34 +1,103 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import static gitlet.Utils.*;
 
+/** The staging area.
+ *
+ *  The state is kept as a snapshot (staging/map) plus a journal of the
+ *  changes made since (staging/journal), so that add and rm append one
+ *  line instead of rewriting the whole map.  The journal starts with the
+ *  generation of the snapshot it applies to and is replayed on top of it
+ *  when the stage is read; a journal of another generation is stale and
+ *  ignored.  Once the journal has more entries than the stage has files,
+ *  it is folded into a new snapshot of the next generation, so each change
+ *  costs O(1) amortized.  While Cache defers writes (batch), changes go
+ *  straight into the snapshot, which is written once at the flush.
+ */
 public class Staging implements Serializable {
+    /** Fixed so that adding methods does not break existing repositories. */
+    private static final long serialVersionUID = 8475829760160367586L;
+
+    /** The serialized form: the removals are stored as a list, as they
+     *  were before they were kept in a set. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("toBlobs", Map.class),
+        new ObjectStreamField("removeBlobs", List.class),
+        new ObjectStreamField("generation", long.class),
+    };
+
+    /** Least number of journal entries before it is folded into the map. */
+    private static final int MIN_JOURNAL = 64;
+
     /** tracking file. */
     private Map<String, String> toBlobs;
 
     /** For remove tracking. */
-    private List<String> removeBlobs;
+    private Set<String> removeBlobs;
+
+    /** Number of snapshots written before this one. */
+    private long generation;
+
+    /** Bytes of the journal applied to this stage: 0 if it has not been
+     *  read or is missing, -1 if it belongs to another generation. */
+    private transient long applied;
+
+    /** Length and modification time of the journal when it was last found
+     *  to belong to another generation. */
+    private transient long staleLength;
+    private transient long staleModified;
+
+    /** Number of entries in the journal. */
+    private transient int entries;
 
     /** The staging area. */
     public static final File STAGING_DIR = join(".gitlet", "staging");
 
+    /** The snapshot of the staging area. */
+    private static final File MAP = join(STAGING_DIR, "map");
+
+    /** The changes made since the snapshot. */
+    private static final File JOURNAL = join(STAGING_DIR, "journal");
+
     public Staging() {
         toBlobs = new TreeMap<>();
-        removeBlobs = new LinkedList<>();
+        removeBlobs = new TreeSet<>();
     }
 
+    /** write the whole stage as a new snapshot and start a new journal. */
     public void saveStage() {
-        writeObject(join(STAGING_DIR, "map"), this);
+        generation += 1;
+        entries = 0;
+        markStale();
+        Cache.putState(MAP, this);
+        if (!Cache.deferring()) {
+            String header = header();
+            Cache.write(JOURNAL, header);
+            applied = header.getBytes(StandardCharsets.UTF_8).length;
+        }
     }
 
     public static Staging getStage() {
-        return readObject(join(STAGING_DIR, "map"), Staging.class);
+        Staging s = Cache.getState(MAP, Staging.class);
+        s.catchUp();
+        return s;
     }
 
     /**
@@ -36,28 +105,171 @@ public class Staging implements Serializable {
      * 2. save the blob.
      */
     public void addStaging(String fileName, Blob b) {
-        getToBlobs().put(fileName, b.getID());
         b.saveBlob();
+        stage(fileName, b.getID());
+    }
+
+    /** add the name - ID pair of a blob already saved to the map. */
+    public void stage(String fileName, String blobID) {
+        toBlobs.put(fileName, blobID);
+        record("+\t" + fileName + "\t" + blobID);
+    }
+
+    /** stage the name - ID pairs of ADDS, whose blobs are already saved,
+     *  and the removal of REMOVES, writing the stage once. */
+    public void stageAll(Map<String, String> adds, Set<String> removes) {
+        toBlobs.putAll(adds);
+        removeBlobs.addAll(removes);
+        saveStage();
     }
 
     /** remove relevant name - ID pair from the adding map. */
     public void removeFromStaging(String fileName) {
-        getToBlobs().remove(fileName);
+        if (toBlobs.remove(fileName) != null) {
+            record("-\t" + fileName);
+        }
+    }
+
+    /** stage FILENAME for removal. */
+    public void addRemove(String fileName) {
+        if (removeBlobs.add(fileName)) {
+            record("r\t" + fileName);
+        }
+    }
+
+    /** unstage the removal of FILENAME. */
+    public void cancelRemove(String fileName) {
+        if (removeBlobs.remove(fileName)) {
+            record("k\t" + fileName);
+        }
     }
 
     public Map<String, String> getToBlobs() {
-        return toBlobs;
+        return Collections.unmodifiableMap(toBlobs);
     }
 
-    public List<String> getToRemoves() {
-        return removeBlobs;
+    /** get the files staged for removal, in lexicographic order. */
+    public Set<String> getToRemoves() {
+        return Collections.unmodifiableSet(removeBlobs);
     }
 
     public static void clear() {
         Staging s = getStage();
         s.toBlobs = new TreeMap<>();
-        s.removeBlobs = new LinkedList<>();
+        s.removeBlobs = new TreeSet<>();
         s.saveStage();
     }
-}
 
+    /** persist the change described by LINE. */
+    private void record(String line) {
+        if (Cache.deferring()) {
+            saveStage();
+            return;
+        }
+        entries += 1;
+        if (entries > Math.max(MIN_JOURNAL, toBlobs.size() + removeBlobs.size())) {
+            saveStage();
+            return;
+        }
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            if (applied <= 0) {
+                String header = header();
+                Cache.write(JOURNAL, header);
+                applied = header.getBytes(StandardCharsets.UTF_8).length;
+            }
+            Files.write(JOURNAL.toPath(), bytes, StandardOpenOption.APPEND);
+            Stats.write(bytes.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        applied += bytes.length;
+    }
+
+    /** apply the journal entries written since this stage was read. */
+    private void catchUp() {
+        long length = JOURNAL.length();
+        if (applied < 0) {
+            if (length == staleLength && JOURNAL.lastModified() == staleModified) {
+                return;
+            }
+            applied = 0;
+        }
+        if (length == applied) {
+            return;
+        }
+        byte[] bytes;
+        try (RandomAccessFile f = new RandomAccessFile(JOURNAL, "r")) {
+            bytes = new byte[(int) (length - applied)];
+            f.seek(applied);
+            f.readFully(bytes);
+        } catch (IOException excp) {
+            return;
+        }
+        Stats.read(bytes.length);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        int start = 0;
+        if (applied == 0) {
+            if (!text.startsWith(header())) {
+                markStale();
+                return;
+            }
+            start = header().length();
+        }
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            apply(text.substring(start, end).split("\t"));
+            entries += 1;
+            start = end + 1;
+        }
+        applied += text.substring(0, start).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /** apply the journal entry with the FIELDS. */
+    private void apply(String[] fields) {
+        switch (fields[0]) {
+            case "+":
+                toBlobs.put(fields[1], fields[2]);
+                break;
+            case "-":
+                toBlobs.remove(fields[1]);
+                break;
+            case "r":
+                removeBlobs.add(fields[1]);
+                break;
+            case "k":
+                removeBlobs.remove(fields[1]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** note that the journal on disk belongs to another generation. */
+    private void markStale() {
+        applied = -1;
+        staleLength = JOURNAL.length();
+        staleModified = JOURNAL.lastModified();
+    }
+
+    /** get the first line of the journal of this generation. */
+    private String header() {
+        return "gitlet-staging " + generation + "\n";
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("toBlobs", toBlobs);
+        fields.put("removeBlobs", new LinkedList<>(removeBlobs));
+        fields.put("generation", generation);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        toBlobs = new TreeMap<>((Map<String, String>) fields.get("toBlobs", null));
+        removeBlobs = new TreeSet<>((List<String>) fields.get("removeBlobs", null));
+        generation = fields.get("generation", 0L);
+    }
+}
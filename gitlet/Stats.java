@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Optional instrumentation of each command.
+ *
+ *  Turned on by the environment variable GITLET_STATS, the system property
+ *  gitlet.stats, or "--stats" before the command name.  While on, Stats
+ *  counts the calls to Utils.readObject and Utils.writeContents, the bytes
+ *  read and written, the objects decoded and the Cache hits, and times the
+ *  phases that commands mark with start() and phase().  After each command
+ *  a one-line JSON summary is printed on the standard error, e.g.
+ *
+ *      {"command":"merge","wallMs":41.2,"phases":{"splitPoint":3.1,...},
+ *       "readObject":57,"writeContents":9,"bytesRead":183220,...}
+ *
+ *  With the environment variable GITLET_JFR or the system property
+ *  gitlet.jfr set, the same figures are also emitted as gitlet.Command and
+ *  gitlet.Phase events for a running JFR recording (see StatsEvents).  This
+ *  is a separate switch because loading JFR costs more than most commands.
+ */
+public class Stats {
+    /** Whether the JSON summary was asked for. */
+    private static boolean requested =
+        System.getenv("GITLET_STATS") != null || System.getProperty("gitlet.stats") != null;
+
+    /** Whether to emit JFR events. */
+    private static final boolean JFR =
+        System.getenv("GITLET_JFR") != null || System.getProperty("gitlet.jfr") != null;
+
+    /** Whether the JSON summary was asked for the next command only. */
+    private static boolean once;
+
+    /** Whether the current command is being measured. */
+    private static volatile boolean enabled;
+
+    private static final AtomicLong READ_OBJECTS = new AtomicLong();
+    private static final AtomicLong WRITES = new AtomicLong();
+    private static final AtomicLong BYTES_READ = new AtomicLong();
+    private static final AtomicLong BYTES_WRITTEN = new AtomicLong();
+    private static final AtomicLong DECODED = new AtomicLong();
+    private static final AtomicLong CACHE_HITS = new AtomicLong();
+
+    /** Total time of each phase of the current command, in nanoseconds. */
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+
+    /** Name of the current command. */
+    private static String command;
+    /** When the current command started, from System.nanoTime(). */
+    private static long started;
+    /** Ask for the JSON summary. */
+    public static void request() {
+        requested = true;
+    }
+
+    /** Ask for the JSON summary of the next command only, e.g. one sent to
+     *  Daemon with "--stats". */
+    public static void requestOnce() {
+        once = true;
+    }
+
+    /** Start measuring the command ARGS. */
+    public static void begin(String[] args) {
+        enabled = requested || once || JFR;
+        if (!enabled) {
+            return;
+        }
+        command = args.length > 0 ? args[0] : "";
+        READ_OBJECTS.set(0);
+        WRITES.set(0);
+        BYTES_READ.set(0);
+        BYTES_WRITTEN.set(0);
+        DECODED.set(0);
+        CACHE_HITS.set(0);
+        PHASES.clear();
+        if (JFR) {
+            StatsEvents.begin();
+        }
+        started = System.nanoTime();
+    }
+
+    /** Finish measuring the current command and report it. */
+    public static void end() {
+        if (!enabled) {
+            return;
+        }
+        long wall = System.nanoTime() - started;
+        enabled = false;
+        if (JFR) {
+            StatsEvents.command(command, READ_OBJECTS.get(), WRITES.get(), BYTES_READ.get(),
+                                BYTES_WRITTEN.get(), DECODED.get(), CACHE_HITS.get());
+        }
+        if (requested || once) {
+            System.err.println(summary(wall));
+        }
+        once = false;
+    }
+
+    /** Mark the start of a phase; pass the result to phase(). */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Record that the phase NAME, begun at START, has ended. */
+    public static void phase(String name, long start) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (PHASES) {
+            PHASES.merge(name, now - start, Long::sum);
+        }
+        if (JFR) {
+            StatsEvents.phase(name, now - start);
+        }
+    }
+
+    /** Count a call to Utils.readObject on a file of BYTES bytes. */
+    static void readObject(long bytes) {
+        if (enabled) {
+            READ_OBJECTS.incrementAndGet();
+            BYTES_READ.addAndGet(bytes);
+        }
+    }
+
+    /** Count BYTES bytes read as raw contents. */
+    static void read(long bytes) {
+        if (enabled) {
+            BYTES_READ.addAndGet(bytes);
+        }
+    }
+
+    /** Count a call to Utils.writeContents writing BYTES bytes. */
+    static void write(long bytes) {
+        if (enabled) {
+            WRITES.incrementAndGet();
+            BYTES_WRITTEN.addAndGet(bytes);
+        }
+    }
+
+    /** Count an object decoded into the cache. */
+    static void decoded() {
+        if (enabled) {
+            DECODED.incrementAndGet();
+        }
+    }
+
+    /** Count a read answered by the cache. */
+    static void cacheHit() {
+        if (enabled) {
+            CACHE_HITS.incrementAndGet();
+        }
+    }
+
+    /** The JSON summary of the current command, which took WALL ns. */
+    private static String summary(long wall) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"command\":\"").append(command.replace("\\", "\\\\").replace("\"", "\\\""));
+        sb.append("\",\"wallMs\":").append(millis(wall));
+        sb.append(",\"phases\":{");
+        String sep = "";
+        synchronized (PHASES) {
+            for (Map.Entry<String, Long> p : PHASES.entrySet()) {
+                sb.append(sep).append('"').append(p.getKey()).append("\":")
+                    .append(millis(p.getValue()));
+                sep = ",";
+            }
+        }
+        sb.append("},\"readObject\":").append(READ_OBJECTS.get());
+        sb.append(",\"writeContents\":").append(WRITES.get());
+        sb.append(",\"bytesRead\":").append(BYTES_READ.get());
+        sb.append(",\"bytesWritten\":").append(BYTES_WRITTEN.get());
+        sb.append(",\"objectsDecoded\":").append(DECODED.get());
+        sb.append(",\"cacheHits\":").append(CACHE_HITS.get());
+        return sb.append('}').toString();
+    }
+
+    /** NANOS as milliseconds with one decimal. */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,82 @@
+package gitlet;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** The JFR events emitted by Stats.  Kept apart from Stats so that the
+ *  JFR classes are only loaded when the events are asked for. */
+class StatsEvents {
+    /** The event of the current command. */
+    private static CommandEvent current;
+
+    /** A command and its I/O counts. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    static class CommandEvent extends Event {
+        @Label("Command")
+        String command;
+        @Label("Objects Read")
+        long readObjects;
+        @Label("Writes")
+        long writes;
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+        @Label("Objects Decoded")
+        long objectsDecoded;
+        @Label("Cache Hits")
+        long cacheHits;
+    }
+
+    /** A phase of a command. */
+    @Name("gitlet.Phase")
+    @Label("Gitlet Phase")
+    @Category("Gitlet")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+    /** A command starts. */
+    static void begin() {
+        current = new CommandEvent();
+        current.begin();
+    }
+
+    /** The command COMMAND ends with the given counts. */
+    static void command(String command, long readObjects, long writes, long bytesRead,
+                        long bytesWritten, long objectsDecoded, long cacheHits) {
+        current.end();
+        if (current.shouldCommit()) {
+            current.command = command;
+            current.readObjects = readObjects;
+            current.writes = writes;
+            current.bytesRead = bytesRead;
+            current.bytesWritten = bytesWritten;
+            current.objectsDecoded = objectsDecoded;
+            current.cacheHits = cacheHits;
+            current.commit();
+        }
+    }
+
+    /** The phase NAME took ELAPSED nanoseconds. */
+    static void phase(String name, long elapsed) {
+        PhaseEvent e = new PhaseEvent();
+        if (e.shouldCommit()) {
+            e.phase = name;
+            e.elapsed = elapsed;
+            e.commit();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import static gitlet.Utils.*;
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/** The files of the working directory and the blob ids of their contents.
+ *
+ *  Normally every query lists or reads the working directory.  The daemon
+ *  instead calls watch(), after which a WatchService reports the files
+ *  created, deleted or modified in the working directory, and the listing
+ *  and the ids already computed are kept between commands; only the
+ *  reported files are looked at again.
+ *
+ *  Events arrive from another thread some time after the change, so
+ *  sync(), called before each command, creates a cookie file and drains
+ *  events until the cookie's own creation comes through: the events of
+ *  every change made before then have come through as well.  If the
+ *  cookie does not show up in time, or events were lost (OVERFLOW), the
+ *  working directory is scanned again from scratch.
+ */
+public class WorkTree {
+    /** Prefix of the names of the cookie files. */
+    static final String COOKIE = ".gitlet-cookie-";
+
+    /** How long sync() waits for its cookie, in milliseconds. */
+    private static final long SYNC_TIMEOUT = 1000;
+
+    /** The watcher of the working directory, or null when not watching. */
+    private static WatchService watcher;
+
+    /** The plain files in the working directory, while watching. */
+    private static final TreeSet<String> FILES = new TreeSet<>();
+
+    /** The blob ids of working files not changed since they were read,
+     *  while watching. */
+    private static final Map<String, String> IDS = new HashMap<>();
+
+    /** Number of cookies made so far. */
+    private static int cookies;
+
+    /** start watching the working directory.  Where the file system cannot
+     *  be watched, queries keep reading the working directory. */
+    public static void watch() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            Repository.CWD.toPath().register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException excp) {
+            unwatch();
+            return;
+        }
+        rescan();
+    }
+
+    /** stop watching the working directory. */
+    public static void unwatch() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException excp) {
+                // nothing is left to release.
+            }
+        }
+        watcher = null;
+        FILES.clear();
+        IDS.clear();
+    }
+
+    /** take in the changes made to the working directory so far. */
+    public static void sync() {
+        if (watcher == null) {
+            return;
+        }
+        long t = Stats.start();
+        String cookie = COOKIE + ProcessHandle.current().pid() + "-" + cookies++;
+        File f = join(Repository.CWD, cookie);
+        boolean complete = false;
+        try {
+            f.createNewFile();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SYNC_TIMEOUT);
+            boolean seen = false;
+            while (!seen) {
+                WatchKey key = watcher.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (key == null) {
+                    break;
+                }
+                boolean overflow = false;
+                for (WatchEvent<?> e : key.pollEvents()) {
+                    if (e.kind() == OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    String name = e.context().toString();
+                    if (name.equals(cookie)) {
+                        seen = true;
+                    } else if (!name.startsWith(COOKIE)) {
+                        changed(name);
+                    }
+                }
+                if (!key.reset()) {
+                    unwatch();
+                    return;
+                }
+                if (overflow) {
+                    break;
+                }
+            }
+            complete = seen;
+        } catch (IOException excp) {
+            // the cookie cannot be made, so the events cannot be trusted.
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } finally {
+            f.delete();
+        }
+        if (!complete) {
+            rescan();
+        }
+        Stats.phase("syncWorkTree", t);
+    }
+
+    /** get the names of the plain files in the working directory, sorted. */
+    public static List<String> files() {
+        if (watcher == null) {
+            return plainFilenamesIn(Repository.CWD);
+        }
+        return new ArrayList<>(FILES);
+    }
+
+    /** get the id the blob of the working file NAME would have, or null
+     *  if there is no such file. */
+    public static String blobID(String name) {
+        if (watcher == null) {
+            return readID(name);
+        }
+        if (!FILES.contains(name)) {
+            return null;
+        }
+        String id = IDS.get(name);
+        if (id == null) {
+            id = readID(name);
+            if (id != null) {
+                IDS.put(name, id);
+            }
+        }
+        return id;
+    }
+
+    /** get the blob id of the contents of the working file NAME, or null. */
+    private static String readID(String name) {
+        File f = join(Repository.CWD, name);
+        if (!f.isFile()) {
+            return null;
+        }
+        return sha1(name, readContentsAsString(f));
+    }
+
+    /** note that the working file NAME was created, deleted or modified. */
+    private static void changed(String name) {
+        IDS.remove(name);
+        if (join(Repository.CWD, name).isFile()) {
+            FILES.add(name);
+        } else {
+            FILES.remove(name);
+        }
+    }
+
+    /** list the working directory again and forget every id. */
+    private static void rescan() {
+        FILES.clear();
+        IDS.clear();
+        for (String name : plainFilenamesIn(Repository.CWD)) {
+            if (!name.startsWith(COOKIE)) {
+                FILES.add(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+"""Builds a class-data-sharing (AppCDS) archive for gitlet.
+
+Usage: python3 cds-train.py OPTIONS [TEST.in ...]
+
+   OPTIONS may include
+       --jar=JAR          The gitlet jar (default ../gitlet.jar).
+       --archive=FILE     The archive to write (default ../gitlet.jsa).
+       --src=SRC          Directory of files referenced by + (default src).
+
+Replays the commands of each TEST.in (default samples/*.in), recording the
+classes every command loads, and dumps the union of those classes into the
+archive.  bin/gitlet uses the archive when it exists.  The archive is only
+valid for the jar it was built from, so rebuild it after each build."""
+
+import sys
+from getopt import getopt, GetoptError
+from glob import glob
+from os import mkdir
+from os.path import abspath, exists, join
+from subprocess import check_call
+from tempfile import TemporaryDirectory
+import replay
+
+def main():
+    try:
+        opts, tests = getopt(sys.argv[1:], '', ['jar=', 'archive=', 'src='])
+    except GetoptError:
+        print(__doc__, file=sys.stderr)
+        sys.exit(1)
+    jar, archive, src_dir = '../gitlet.jar', '../gitlet.jsa', 'src'
+    for opt, val in opts:
+        if opt == '--jar':
+            jar = val
+        elif opt == '--archive':
+            archive = val
+        elif opt == '--src':
+            src_dir = val
+    jar, archive, src_dir = abspath(jar), abspath(archive), abspath(src_dir)
+    tests = tests or sorted(glob('samples/*.in'))
+
+    classes = {}
+    with TemporaryDirectory() as tmp:
+        lst = join(tmp, 'classes.lst')
+        java = ['java', '-XX:DumpLoadedClassList=' + lst, '-cp', jar,
+                'gitlet.Main']
+
+        def collect(args):
+            # Each JVM overwrites the list, so merge it after every command.
+            if exists(lst):
+                with open(lst) as inp:
+                    for name in inp.read().split('\n'):
+                        if name and not name.startswith('#'):
+                            classes.setdefault(name, None)
+
+        commands = 0
+        for n, test in enumerate(tests):
+            work = join(tmp, 'work{}'.format(n))
+            mkdir(work)
+            commands += len(replay.replay(test, java, src_dir, work, collect))
+
+        merged = join(tmp, 'merged.lst')
+        with open(merged, 'w') as out:
+            out.write('\n'.join(classes) + '\n')
+        check_call(['java', '-Xshare:dump', '-XX:SharedClassListFile=' + merged,
+                    '-XX:SharedArchiveFile=' + archive, '-cp', jar])
+    print('Archived {} classes loaded by {} commands into {}'
+          .format(len(classes), commands, archive))
+
+if __name__ == '__main__':
+    main()
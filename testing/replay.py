@@ -0,0 +1,71 @@
+"""Replays the gitlet commands in tester .in files without checking their
+output.  Used to drive gitlet through a realistic mix of commands, e.g. to
+train the class-data-sharing archive (cds-train.py) or to time JVM startup
+(startup-bench.py)."""
+
+import re
+from os import mkdir, remove
+from os.path import dirname, exists, join
+from shutil import copyfile
+from subprocess import run, DEVNULL
+from time import perf_counter
+import shlex
+
+def steps(test):
+    """Yield the steps of TEST as ('C', DIR), ('+', NAME, SRC), ('-', NAME)
+    or ('>', ARGS) tuples, following includes and skipping the expected
+    output of commands.  Commands that depend on captured output (${...})
+    are skipped."""
+    with open(test) as inp:
+        lines = inp.read().split("\n")
+    skipping = False
+    for L in lines:
+        if skipping:
+            skipping = not re.match(r'<<<', L)
+            continue
+        if re.match(r'\s*(#|$)', L):
+            continue
+        M = re.match(r'(I|C|\+|-|>|=|\*|E|D|T)\s*(.*)', L)
+        if not M:
+            continue
+        op, rest = M.group(1), M.group(2).strip()
+        if op == 'I':
+            yield from steps(join(dirname(test), rest))
+        elif op == 'C':
+            yield ('C', rest)
+        elif op == '+':
+            name, src = rest.split()
+            yield ('+', name, src)
+        elif op == '-':
+            yield ('-', rest)
+        elif op == '>':
+            skipping = True
+            if '${' not in rest:
+                yield ('>', shlex.split(rest))
+
+def replay(test, java, src_dir, workdir, after=None, timeout=30):
+    """Run the commands of TEST with the command line JAVA (a list ending
+    in the main class) inside the empty directory WORKDIR, copying files
+    from SRC_DIR, and call AFTER(ARGS), if given, after each command.
+    Returns a list of (ARGS, SECONDS) pairs."""
+    times = []
+    cdir = workdir
+    for step in steps(test):
+        if step[0] == 'C':
+            cdir = join(workdir, step[1]) if step[1] else workdir
+            if not exists(cdir):
+                mkdir(cdir)
+        elif step[0] == '+':
+            copyfile(join(src_dir, step[2]), join(cdir, step[1]))
+        elif step[0] == '-':
+            if exists(join(cdir, step[1])):
+                remove(join(cdir, step[1]))
+        else:
+            args = step[1]
+            start = perf_counter()
+            run(java + args, cwd=cdir, stdin=DEVNULL, stdout=DEVNULL,
+                stderr=DEVNULL, timeout=timeout)
+            times.append((args, perf_counter() - start))
+            if after:
+                after(args)
+    return times
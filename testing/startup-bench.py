@@ -0,0 +1,75 @@
+"""Reports the wall time of each gitlet command, JVM startup included.
+
+Usage: python3 startup-bench.py OPTIONS [TEST.in ...]
+
+   OPTIONS may include
+       --launcher=CMD     Command that runs gitlet (default ../bin/gitlet).
+                          May be given several times to compare launchers,
+                          e.g. --launcher="java -cp .. gitlet.Main".
+       --repeat=N         Replay the tests N times (default 3).
+       --max-ms=MS        Exit with status 1 if the mean time of any command
+                          exceeds MS milliseconds.
+       --src=SRC          Directory of files referenced by + (default src).
+
+Replays the commands of each TEST.in (default samples/*.in) and prints, for
+each launcher and command name, the number of runs and the mean and
+minimum wall time in milliseconds.  Paths in CMD are relative to the
+current directory."""
+
+import shlex
+import sys
+from getopt import getopt, GetoptError
+from glob import glob
+from os import mkdir
+from os.path import abspath, exists, join
+from tempfile import TemporaryDirectory
+import replay
+
+def main():
+    try:
+        opts, tests = getopt(sys.argv[1:], '',
+                             ['launcher=', 'repeat=', 'max-ms=', 'src='])
+    except GetoptError:
+        print(__doc__, file=sys.stderr)
+        sys.exit(1)
+    launchers, repeat, max_ms, src_dir = [], 3, None, 'src'
+    for opt, val in opts:
+        if opt == '--launcher':
+            launchers.append(val)
+        elif opt == '--repeat':
+            repeat = int(val)
+        elif opt == '--max-ms':
+            max_ms = float(val)
+        elif opt == '--src':
+            src_dir = val
+    launchers = launchers or [abspath('../bin/gitlet')]
+    src_dir = abspath(src_dir)
+    tests = tests or sorted(glob('samples/*.in'))
+
+    slow = False
+    print('{:<40} {:<12} {:>5} {:>9} {:>9}'
+          .format('launcher', 'command', 'runs', 'mean ms', 'min ms'))
+    for launcher in launchers:
+        # Commands run in scratch directories, so anchor relative paths here.
+        java = [abspath(w) if exists(w) else w for w in shlex.split(launcher)]
+        times = {}
+        with TemporaryDirectory() as tmp:
+            for r in range(repeat):
+                for n, test in enumerate(tests):
+                    work = join(tmp, 'work{}-{}'.format(r, n))
+                    mkdir(work)
+                    for args, secs in replay.replay(test, java, src_dir, work):
+                        times.setdefault(args[0] if args else '', []).append(secs)
+        for cmd in sorted(times):
+            runs = times[cmd]
+            mean = 1000 * sum(runs) / len(runs)
+            print('{:<40} {:<12} {:>5} {:>9.1f} {:>9.1f}'
+                  .format(launcher[-40:], cmd, len(runs), mean, 1000 * min(runs)))
+            if max_ms is not None and mean > max_ms:
+                slow = True
+    if slow:
+        print('Some commands took longer than {} ms on average.'.format(max_ms))
+        sys.exit(1)
+
+if __name__ == '__main__':
+    main()